@@ -10,12 +10,14 @@ public class Controller
 	private int black = 1;
 	private long startingTime = 0;
 	private double timeLimit = 14.0; // minutes
+	private int[][][] rookRays = null;	// rookRays[x*columns+y][direction] : squares a rook passes over, nearest first
 	
 	public Controller(Board board)
 	{
 		this.board = board;
 		this.rows = this.board.getRows();
 		this.columns = this.board.getColumns();
+		this.rookRays = computeRookRays();
 		this.startingTime = System.nanoTime();
 	}
 	
@@ -153,210 +155,56 @@ public class Controller
 	
 	private boolean checkWhiteRook(int x1, int y1, int x2, int y2)
 	{
-		int rookBlocks = Rook.getRookBlocks();
-		
-		// check if it can move upwards
-		for(int i=0; i<rookBlocks; i++)
-		{
-			if((x1-(i+1)) < 0)
-				break;
-			
-			// if there is a white chess part ahead do not keep on iterating
-			if(!board.getChessLabel()[x1-(i+1)][y1].getEmpty() 
-				&& board.getChessLabel()[x1-(i+1)][y1].getCp().getPlayer() == white)
-			{
-				break;
-			}
-			
-			if( (x1-(i+1) == x2) && (y1==y2) )
-			{	
-				if( (!board.getChessLabel()[x2][y2].getEmpty()) 
-					&& (board.getChessLabel()[x2][y2].getCp().getPlayer() == black) )
-				{
-					int points = board.getChessLabel()[x2][y2].getCp().getPoints();
-					this.addPoints(white, points);
-					
-					if(board.getChessLabel()[x2][y2].getCp() instanceof King)
-						nKings--;
-					else
-						nChessParts--;
-					
-					board.getChessLabel()[x2][y2].setCp(board.getChessLabel()[x1][y1].getCp());
-					board.getChessLabel()[x1][y1].removeCp();
-					return true;
-				}
-				else if(board.getChessLabel()[x2][y2].getEmpty())
-				{
-					this.checkPrize(x2, y2, white);
-					board.getChessLabel()[x2][y2].setCp(board.getChessLabel()[x1][y1].getCp());
-					board.getChessLabel()[x1][y1].removeCp();
-					return true;
-				}
-				else
-				{
-					return false;
-				}
-			}
-			
-			// in case that there are two chess parts ahead it is not legal to attack the second now
-			// by detouring the first one
-			if( (x1-(i+2) >= 0) && (!board.getChessLabel()[x1-(i+1)][y1].getEmpty()
-								     || board.getChessLabel()[x1-(i+1)][y1].getHasPrize()) )
-				break;
-			
-		}
-		
-		// check if it can move downwards
-		for(int i=0; i<rookBlocks; i++)
+		// walk the precomputed rays of the rook: upwards, downwards, on the left, on the right
+		for(int[] ray : rookRays[x1*columns + y1])
 		{
-			if((x1+(i+1)) == rows)
-				break;
-			
-			// if there is a white chess part ahead do not keep on iterating
-			if(!board.getChessLabel()[x1+(i+1)][y1].getEmpty() 
-				&& board.getChessLabel()[x1+(i+1)][y1].getCp().getPlayer() == white)
-			{
-				break;
-			}
-			
-			if( (x1+(i+1) == x2) && (y1==y2) )
-			{
-				if( (!board.getChessLabel()[x2][y2].getEmpty())
-					&& (board.getChessLabel()[x2][y2].getCp().getPlayer() == black) )
-				{
-					int points = board.getChessLabel()[x2][y2].getCp().getPoints();
-					this.addPoints(white, points);
-					
-					if(board.getChessLabel()[x2][y2].getCp() instanceof King)
-						nKings--;
-					else
-						nChessParts--;
-					
-					board.getChessLabel()[x2][y2].setCp(board.getChessLabel()[x1][y1].getCp());
-					board.getChessLabel()[x1][y1].removeCp();
-					return true;
-				}
-				else if(board.getChessLabel()[x2][y2].getEmpty())
-				{
-					this.checkPrize(x2, y2, white);
-					board.getChessLabel()[x2][y2].setCp(board.getChessLabel()[x1][y1].getCp());
-					board.getChessLabel()[x1][y1].removeCp();
-					return true;
-				}
-				else
-				{
-					return false;
-				}
-			}
-			
-			// in case that there are two chess parts ahead it is not legal to attack the second
-			// by detouring the first
-			if( (x1+(i+2) < rows) && (!board.getChessLabel()[x1+(i+1)][y1].getEmpty()
-									  || board.getChessLabel()[x1+(i+1)][y1].getHasPrize()) )
-				break;
-			
-		}
-		
-		// check if it can move on the left
-		for(int i=0; i<rookBlocks; i++)
-		{
-			if((y1-(i+1)) < 0)
-				break;
-			
-			// if there is a white chess part ahead do not keep on iterating
-			if(!board.getChessLabel()[x1][y1-(i+1)].getEmpty() 
-				 && board.getChessLabel()[x1][y1-(i+1)].getCp().getPlayer() == white)
+			for(int square : ray)
 			{
-				break;
-			}
-			
-			if( (x1==x2) && ((y1-(i+1)) == y2))
-			{
-				if( (!board.getChessLabel()[x2][y2].getEmpty()) 
-					&& (board.getChessLabel()[x2][y2].getCp().getPlayer() == black) )
-				{
-					int points = board.getChessLabel()[x2][y2].getCp().getPoints();
-					this.addPoints(white, points);
-					
-					if(board.getChessLabel()[x2][y2].getCp() instanceof King)
-						nKings--;
-					else
-						nChessParts--;
-					
-					board.getChessLabel()[x2][y2].setCp(board.getChessLabel()[x1][y1].getCp());
-					board.getChessLabel()[x1][y1].removeCp();
-					return true;
-				}
-				else if(board.getChessLabel()[x2][y2].getEmpty())
-				{
-					this.checkPrize(x2, y2, white);
-					board.getChessLabel()[x2][y2].setCp(board.getChessLabel()[x1][y1].getCp());
-					board.getChessLabel()[x1][y1].removeCp();
-					return true;
-				}
-				else
+				int x = square / columns;
+				int y = square % columns;
+				
+				// if there is a white chess part ahead do not keep on iterating
+				if(!board.getChessLabel()[x][y].getEmpty() 
+					&& board.getChessLabel()[x][y].getCp().getPlayer() == white)
 				{
-					return false;
+					break;
 				}
-			}
-			
-			// in case that there are two chess parts ahead it is not legal to attack the second now
-			// by detouring the first one
-			if( (y1-(i+2) >= 0) && (!board.getChessLabel()[x1][y1-(i+1)].getEmpty()
-									 || board.getChessLabel()[x1][y1-(i+1)].getHasPrize()) )
-				break;
-
-		}
-		
-		// check if it can move on the right
-		for(int i=0; i<rookBlocks; i++)
-		{
-			if((y1+(i+1)) > (columns-1))
-				break;
-			
-			// if there is a white chess part ahead do not keep on iterating
-			if(!board.getChessLabel()[x1][y1+(i+1)].getEmpty() 
-				&& board.getChessLabel()[x1][y1+(i+1)].getCp().getPlayer() == white)
-			{
-				break;
-			}
-			
-			if( (x1==x2) && ((y1+(i+1)) == y2))
-			{
-				if( (!board.getChessLabel()[x2][y2].getEmpty()) 
-					&& (board.getChessLabel()[x2][y2].getCp().getPlayer() == black) )
+				
+				if( (x == x2) && (y == y2) )
 				{
-					int points = board.getChessLabel()[x2][y2].getCp().getPoints();
-					this.addPoints(white, points);
-					
-					if(board.getChessLabel()[x2][y2].getCp() instanceof King)
-						nKings--;
+					if( (!board.getChessLabel()[x2][y2].getEmpty()) 
+						&& (board.getChessLabel()[x2][y2].getCp().getPlayer() == black) )
+					{
+						int points = board.getChessLabel()[x2][y2].getCp().getPoints();
+						this.addPoints(white, points);
+						
+						if(board.getChessLabel()[x2][y2].getCp() instanceof King)
+							nKings--;
+						else
+							nChessParts--;
+						
+						board.getChessLabel()[x2][y2].setCp(board.getChessLabel()[x1][y1].getCp());
+						board.getChessLabel()[x1][y1].removeCp();
+						return true;
+					}
+					else if(board.getChessLabel()[x2][y2].getEmpty())
+					{
+						this.checkPrize(x2, y2, white);
+						board.getChessLabel()[x2][y2].setCp(board.getChessLabel()[x1][y1].getCp());
+						board.getChessLabel()[x1][y1].removeCp();
+						return true;
+					}
 					else
-						nChessParts--;
-					
-					board.getChessLabel()[x2][y2].setCp(board.getChessLabel()[x1][y1].getCp());
-					board.getChessLabel()[x1][y1].removeCp();
-					return true;
-				}
-				else if(board.getChessLabel()[x2][y2].getEmpty())
-				{
-					this.checkPrize(x2, y2, white);
-					board.getChessLabel()[x2][y2].setCp(board.getChessLabel()[x1][y1].getCp());
-					board.getChessLabel()[x1][y1].removeCp();
-					return true;
-				}
-				else
-				{
-					return false;
+					{
+						return false;
+					}
 				}
+				
+				// in case that there are two chess parts ahead it is not legal to attack the second now
+				// by detouring the first one
+				if(!board.getChessLabel()[x][y].getEmpty() || board.getChessLabel()[x][y].getHasPrize())
+					break;
 			}
-			
-			// in case that there are two chess parts ahead it is not legal to attack the second now
-			// by detouring the first one
-			if( (y1+(i+2) < columns) && (!board.getChessLabel()[x1][y1+(i+1)].getEmpty()
-										  || board.getChessLabel()[x1][y1+(i+1)].getHasPrize()) )
-				break;
-			
 		}
 		
 		return false;
@@ -486,212 +334,59 @@ public class Controller
 	
 	private boolean checkBlackRook(int x1, int y1, int x2, int y2)
 	{
-		int rookBlocks = Rook.getRookBlocks();
-		
-		// check if it can move upwards
-		for(int i=0; i<rookBlocks; i++)
+		// walk the precomputed rays of the rook: upwards, downwards, on the left, on the right
+		for(int[] ray : rookRays[x1*columns + y1])
 		{
-			if((x1-(i+1)) < 0)
-				break;
-			
-			// if there is a black chess part ahead do not keep on iterating
-			if(!board.getChessLabel()[x1-(i+1)][y1].getEmpty() 
-				&& board.getChessLabel()[x1-(i+1)][y1].getCp().getPlayer() == black)
-			{	
-				break;
-			}
-			
-			if( (x1-(i+1) == x2) && y1==y2 )
+			for(int square : ray)
 			{
-				if( (!board.getChessLabel()[x2][y2].getEmpty()) 
-					&& (board.getChessLabel()[x2][y2].getCp().getPlayer() == white) )
-				{
-					int points = board.getChessLabel()[x2][y2].getCp().getPoints();
-					this.addPoints(black, points);
-					
-					if(board.getChessLabel()[x2][y2].getCp() instanceof King)
-						nKings--;
-					else
-						nChessParts--;
-					
-					board.getChessLabel()[x2][y2].setCp(board.getChessLabel()[x1][y1].getCp());
-					board.getChessLabel()[x1][y1].removeCp();
-					return true;
-				}
-				else if(board.getChessLabel()[x2][y2].getEmpty())
-				{
-					this.checkPrize(x2, y2, black);
-					board.getChessLabel()[x2][y2].setCp(board.getChessLabel()[x1][y1].getCp());
-					board.getChessLabel()[x1][y1].removeCp();
-					return true;
-				}
-				else
+				int x = square / columns;
+				int y = square % columns;
+				
+				// if there is a black chess part ahead do not keep on iterating
+				if(!board.getChessLabel()[x][y].getEmpty() 
+					&& board.getChessLabel()[x][y].getCp().getPlayer() == black)
 				{
-					return false;
-				}
-			}
-			
-			// in case that there are two chess parts ahead it is not legal to attack the second now
-			// by detouring the first one
-			if( (x1-(i+2) >= 0) && (!board.getChessLabel()[x1-(i+1)][y1].getEmpty()
-								     || board.getChessLabel()[x1-(i+1)][y1].getHasPrize()) )
-				break;
-		}
-		
-		// check if it can move downwards
-		for(int i=0; i<rookBlocks; i++)
-		{
-			if((x1+(i+1)) > (rows-1))
-				break;
-			
-			// if there is a black chess part ahead do not keep on iterating
-			if(!board.getChessLabel()[x1+(i+1)][y1].getEmpty() 
-					&& board.getChessLabel()[x1+(i+1)][y1].getCp().getPlayer() == black)
-			{	
 					break;
-			}
-			
-			if( (x1+(i+1) == x2) && (y1==y2) )
-			{
-				if( (!board.getChessLabel()[x2][y2].getEmpty()) 
-						&& (board.getChessLabel()[x2][y2].getCp().getPlayer() == white) )
-				{
-					int points = board.getChessLabel()[x2][y2].getCp().getPoints();
-					this.addPoints(black, points);
-					
-					if(board.getChessLabel()[x2][y2].getCp() instanceof King)
-						nKings--;
-					else
-						nChessParts--;
-					
-					board.getChessLabel()[x2][y2].setCp(board.getChessLabel()[x1][y1].getCp());
-					board.getChessLabel()[x1][y1].removeCp();
-					return true;
-				}
-				else if(board.getChessLabel()[x2][y2].getEmpty())
-				{
-					this.checkPrize(x2, y2, black);
-					board.getChessLabel()[x2][y2].setCp(board.getChessLabel()[x1][y1].getCp());
-					board.getChessLabel()[x1][y1].removeCp();
-					return true;
 				}
-				else
+				
+				if( (x == x2) && (y == y2) )
 				{
-					return false;
-				}
-			}
-			
-			// in case that there are two chess parts ahead it is not legal to attack the second now
-			// by detouring the first one
-			if( (x1+(i+2) < rows) && (!board.getChessLabel()[x1+(i+1)][y1].getEmpty()
-									   || board.getChessLabel()[x1+(i+1)][y1].getHasPrize()) )
-				break;
-			
-		}
-		
-		// check if it can move on the left
-		for(int i=0; i<rookBlocks; i++)
-		{
-			if((y1-(i+1)) < 0)
-				break;
-			
-			// if there is a black chess part ahead do not keep on iterating
-			if(!board.getChessLabel()[x1][y1-(i+1)].getEmpty() 
-					&& board.getChessLabel()[x1][y1-(i+1)].getCp().getPlayer() == black)
-			{	
-				break;
-			}
-			
-			if( (x1==x2) && ((y1-(i+1)) == y2))
-			{
-				if( (!board.getChessLabel()[x2][y2].getEmpty()) 
+					if( (!board.getChessLabel()[x2][y2].getEmpty()) 
 						&& (board.getChessLabel()[x2][y2].getCp().getPlayer() == white) )
-				{
-					int points = board.getChessLabel()[x2][y2].getCp().getPoints();
-					this.addPoints(black, points);
-					
-					if(board.getChessLabel()[x2][y2].getCp() instanceof King)
-						nKings--;
+					{
+						int points = board.getChessLabel()[x2][y2].getCp().getPoints();
+						this.addPoints(black, points);
+						
+						if(board.getChessLabel()[x2][y2].getCp() instanceof King)
+							nKings--;
+						else
+							nChessParts--;
+						
+						board.getChessLabel()[x2][y2].setCp(board.getChessLabel()[x1][y1].getCp());
+						board.getChessLabel()[x1][y1].removeCp();
+						return true;
+					}
+					else if(board.getChessLabel()[x2][y2].getEmpty())
+					{
+						this.checkPrize(x2, y2, black);
+						board.getChessLabel()[x2][y2].setCp(board.getChessLabel()[x1][y1].getCp());
+						board.getChessLabel()[x1][y1].removeCp();
+						return true;
+					}
 					else
-						nChessParts--;
-					
-					board.getChessLabel()[x2][y2].setCp(board.getChessLabel()[x1][y1].getCp());
-					board.getChessLabel()[x1][y1].removeCp();
-					return true;
-				}
-				else if(board.getChessLabel()[x2][y2].getEmpty())
-				{
-					this.checkPrize(x2, y2, black);
-					board.getChessLabel()[x2][y2].setCp(board.getChessLabel()[x1][y1].getCp());
-					board.getChessLabel()[x1][y1].removeCp();
-					return true;
-				}
-				else
-				{
-					return false;
+					{
+						return false;
+					}
 				}
-			}	
-			
-			// in case that there are two chess parts ahead it is not legal to attack the second now
-			// by detouring the first one
-			if( (y1-(i+2) >= 0) && (!board.getChessLabel()[x1][y1-(i+1)].getEmpty()
-		                             || board.getChessLabel()[x1][y1-(i+1)].getHasPrize()) )
-				break;
-			
-		}
-		
-		// check if it can move on the right
-		for(int i=0; i<rookBlocks; i++)
-		{
-			if((y1+(i+1)) == columns)
-				break;
-			
-			// if there is a black chess part ahead do not keep on iterating
-			if(!board.getChessLabel()[x1][y1+(i+1)].getEmpty() 
-					&& board.getChessLabel()[x1][y1+(i+1)].getCp().getPlayer() == black)
-			{	
-				break;
+				
+				// in case that there are two chess parts ahead it is not legal to attack the second now
+				// by detouring the first one
+				if(!board.getChessLabel()[x][y].getEmpty() || board.getChessLabel()[x][y].getHasPrize())
+					break;
 			}
-			
-			if( (x1==x2) && ((y1+(i+1)) == y2))
-			{
-				if( (!board.getChessLabel()[x2][y2].getEmpty()) 
-					&& (board.getChessLabel()[x2][y2].getCp().getPlayer() == white) )
-				{
-					int points = board.getChessLabel()[x2][y2].getCp().getPoints();
-					this.addPoints(black, points);
-					
-					if(board.getChessLabel()[x2][y2].getCp() instanceof King)
-						nKings--;
-					else
-						nChessParts--;
-					
-					board.getChessLabel()[x2][y2].setCp(board.getChessLabel()[x1][y1].getCp());
-					board.getChessLabel()[x1][y1].removeCp();
-					return true;
-				}
-				else if(board.getChessLabel()[x2][y2].getEmpty())
-				{
-					this.checkPrize(x2, y2, black);
-					board.getChessLabel()[x2][y2].setCp(board.getChessLabel()[x1][y1].getCp());
-					board.getChessLabel()[x1][y1].removeCp();
-					return true;
-				}
-				else
-				{
-					return false;
-				}
-			}	
-			
-			// in case that there are two chess parts ahead it is not legal to attack the second now
-			// by detouring the first one
-			if( (y1+(i+2) < columns) && (!board.getChessLabel()[x1][y1+(i+1)].getEmpty()
-										  || board.getChessLabel()[x1][y1+(i+1)].getHasPrize()) )
-				break;
-						
 		}
 		
-		return false;		
+		return false;
 	}
 	
 	private boolean checkBlackKing(int x1, int y1, int x2, int y2)
@@ -736,6 +431,40 @@ public class Controller
 		return false;
 	}
 	
+	// the rays of the rook (upwards, downwards, on the left, on the right) for every square, computed once
+	private int[][][] computeRookRays()
+	{
+		int rookBlocks = Rook.getRookBlocks();
+		int[][] directions = { {-1, 0}, {1, 0}, {0, -1}, {0, 1} };
+		int[][][] rays = new int[rows*columns][directions.length][];
+		
+		for(int i=0; i<rows; i++)
+		{
+			for(int j=0; j<columns; j++)
+			{
+				for(int d=0; d<directions.length; d++)
+				{
+					int length = 0;
+					
+					while(length < rookBlocks)
+					{
+						int x = i + directions[d][0]*(length+1);
+						int y = j + directions[d][1]*(length+1);
+						
+						if(x < 0 || x > (rows-1) || y < 0 || y > (columns-1))
+							break;
+						length++;
+					}
+					
+					rays[i*columns + j][d] = new int[length];
+					for(int k=0; k<length; k++)
+						rays[i*columns + j][d][k] = (i + directions[d][0]*(k+1))*columns + (j + directions[d][1]*(k+1));
+				}
+			}
+		}
+		return rays;
+	}
+	
 	private void addPoints(int player, int points)
 	{
 		// 0 == the white player, 1 == black player
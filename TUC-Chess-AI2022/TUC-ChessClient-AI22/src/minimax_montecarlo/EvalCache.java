@@ -0,0 +1,54 @@
+package minimax_montecarlo;
+
+import tuc_chess.World;
+
+/* fixed size cache of World.evaluate() in front of it, one slot per position hash, a new score replaces the old one
+   a key is the hash key of the position, changed for the side the score is for
+   the cache is shared by the threads of a search without locking: a slot keeps key ^ score,
+   so a score that one thread has half written while another one reads it does not match its key
+   the hit counters are not synchronized, with more than one thread they are close but not exact */
+public class EvalCache {
+    private static final long BLACK_PLAYER = 0xC2B2AE3D27D4EB4FL;  // keys differ by the side evaluate() scores for
+    private static final int ENTRY_BYTES = 12;
+
+    private final long[] keys;
+    private final int[] scores;
+    private final int mask;
+    private long probes = 0;
+    private long hits = 0;
+
+    public EvalCache(int sizeMB)
+    {
+        long slots = Math.max(1, (long) sizeMB * 1024 * 1024 / ENTRY_BYTES);
+        int size = Integer.highestOneBit((int) Math.min(slots, 1 << 30));
+
+        keys = new long[size];
+        scores = new int[size];
+        mask = size - 1;
+    }
+
+    // world.evaluate(player), from the cache when the position has been evaluated before
+    public int evaluate(World world, int player)
+    {
+        long key = world.getHashKey() ^ (player == 1 ? BLACK_PLAYER : 0L);
+        int slot = (int) key & mask;
+        int score = scores[slot];
+
+        probes++;
+        if ((keys[slot] ^ score) == key) {
+            hits++;
+            return score;
+        }
+
+        score = world.evaluate(player);
+        keys[slot] = key ^ score;
+        scores[slot] = score;
+        return score;
+    }
+
+    // the share of the evaluations answered by the cache, 0 before the first one
+    public double hitRate()
+    {
+        return probes == 0 ? 0 : hits / (double) probes;
+    }
+}
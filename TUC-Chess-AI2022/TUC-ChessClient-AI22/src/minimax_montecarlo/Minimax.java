@@ -1,89 +1,594 @@
 package minimax_montecarlo;
 
+import tuc_chess.Move;
+import tuc_chess.Tablebase;
 import tuc_chess.World;
 
-import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class Minimax {
-    private final Integer MAX = Integer.MAX_VALUE;
-    private final Integer MIN = Integer.MIN_VALUE;
+    private final int MAX = Integer.MAX_VALUE;
+    private final int MIN = Integer.MIN_VALUE;
+    private static final int MAX_ITERATIVE_DEPTH = 64;
+    private static final long BLACK_MAXIMIZER = 0x9E3779B97F4A7C15L;  // table keys differ by the side evaluate() scores for
     private int maximizer;
     private int maxDepth;
     private boolean abPruning;
 
+    private World world;            // the single position the search walks on with make/unmake
+    private MovePicker[] pickers;   // one per ply
+    private TranspositionTable table;
+    private EvalCache evalCache = null;    // null -> every leaf is evaluated again
+    private MoveOrdering ordering = null;   // null -> children are searched in the order they are generated
+    private int bestMove;
+    private long keyPerspective;
+
+    private int rootFirstMove = Move.NONE;   // searched first at the root, the best move of the previous iteration
+    private long deadline = 0;               // System.currentTimeMillis() when the search has to stop, 0 -> no limit
+    private boolean aborted = false;
+    private long nodes = 0;
+    private boolean exactDepth = true;       // only table entries searched to the same depth answer a node
+
+    /* quiescence search: at maxDepth the search goes on with the captures and prize grabs only,
+       so that a leaf is not evaluated in the middle of an exchange; the player to move may also
+       stand pat, keep the evaluation of the position, instead of capturing */
+    private boolean quiescence = false;
+
+    /* principal variation search: once a child has been searched with the full window, the others
+       are searched with a null window that only tells whether they beat it, and searched again
+       with the full window when they do; the iterations of iterativeDeepening() start with an
+       aspiration window around the score of the iteration before and open it when the score falls outside */
+    private boolean pvs = false;
+    private static final int ASPIRATION_WINDOW = 4;
+
+    /* null move pruning: before searching its moves, the player to move passes and the opponent
+       searches NULL_MOVE_REDUCTION plies less; if passing already fails high (low for the minimizer)
+       the node is cut off, unless the player has only king and pawns, where passing can be the best move
+       late move reductions: the quiet moves sorted after the first LMR_MOVES are searched one ply
+       less with a null window, and again at full depth when they beat alpha (beta for the minimizer) */
+    private boolean nullMove = false;
+    private boolean lmr = false;
+    private static final int NULL_MOVE_REDUCTION = 2;
+    private static final int LMR_MOVES = 3;
+    private static final int LMR_DEPTH = 3;     // plies left at least for a move to be reduced
+    // what a capture can at most change evaluate() by: its points plus the material it removes
+    private static final int[] CAPTURE_GAIN = {0, 1 + 1, 3 + 10, Integer.MAX_VALUE / 4, 1};
+    // the king check penalty of evaluate() can swing as well
+    private static final int DELTA_MARGIN = 20;
+
+    /* parallel search (lazy SMP): helper threads search the same root on their own copy of the position,
+       sharing only the transposition table, and the main thread's result is played */
+    private int threads = 1;
+    private AtomicBoolean stopSignal = null;    // set when a helper has to stop
+    private AtomicBoolean helpersStop = null;   // the signal of the helpers this search has started
+
     public Minimax(int maximizer, int maxDepth, boolean pruning)
+    {
+        this(maximizer, maxDepth, pruning, null);
+    }
+
+    // table may be null, then every position is searched again as many times as it is reached
+    public Minimax(int maximizer, int maxDepth, boolean pruning, TranspositionTable table)
     {
         this.maximizer = maximizer;
         this.maxDepth = maxDepth;
         this.abPruning = pruning;
+        this.table = table;
+        this.keyPerspective = maximizer == 1 ? BLACK_MAXIMIZER : 0L;
+
+        this.pickers = new MovePicker[Math.max(maxDepth, MAX_ITERATIVE_DEPTH) + 1];
+        for (int i = 0; i < pickers.length; i++)
+            pickers[i] = new MovePicker();
+    }
+
+    // helpers are started only when there is a table to share
+    public void setThreads(int threads)
+    {
+        this.threads = threads;
+    }
+
+    /* searches one ply deeper at a time until <timeBudget> milliseconds have passed
+       and returns the best move of the last iteration that finished */
+    public int iterativeDeepening(World w, long timeBudget)
+    {
+        long start = System.currentTimeMillis();
+
+        world = new World();
+        world.copyFrom(w);
+        world.setMyColor(maximizer);
+
+        if (table != null)
+            table.newSearch();
+
+        // there is no plain search to agree with, a deeper result is a better one
+        exactDepth = false;
+        Thread[] helpers = startHelpers();
+
+        int selectedMove = Move.NONE;
+        rootFirstMove = Move.NONE;
+        deadline = 0;   // the first iteration always finishes, so there is a move to play
+        aborted = false;
+
+        int score = 0;
+        for (int depth = 1; depth <= MAX_ITERATIVE_DEPTH; depth++) {
+            maxDepth = depth;
+
+            int alpha = MIN;
+            int beta = MAX;
+            // a score at a limit keeps the window open, score +- ASPIRATION_WINDOW would overflow
+            if (pvs && abPruning && depth > 1 && score > MIN + ASPIRATION_WINDOW && score < MAX - ASPIRATION_WINDOW) {
+                alpha = score - ASPIRATION_WINDOW;
+                beta = score + ASPIRATION_WINDOW;
+            }
+            while (true) {
+                bestMove = Move.NONE;
+                int value = maxValue(alpha, beta, 0);
+                if (aborted)
+                    break;
+
+                // outside the window the score is only a bound, search again with that side open
+                if (value <= alpha && alpha != MIN)
+                    alpha = MIN;
+                else if (value >= beta && beta != MAX)
+                    beta = MAX;
+                else {
+                    score = value;
+                    break;
+                }
+            }
+
+            if (aborted)
+                break;
+            selectedMove = bestMove;
+            rootFirstMove = bestMove;
+            deadline = start + timeBudget;
+
+            if (System.currentTimeMillis() >= deadline)
+                break;
+        }
+
+        stopHelpers(helpers);
+        deadline = 0;
+        return selectedMove;
     }
 
-    public String alphaBeta(World w)
+    // the best move the table knows for the opponent in the position, Move.NONE if it knows none
+    public int expectedReply(World w)
     {
-        Node rootNode = new Node();
-        rootNode.getState().setWorld(w);
-        rootNode.getState().setPlayerColor(maximizer);
+        if (table == null)
+            return Move.NONE;
+
+        long entry = table.probe(w.getHashKey() ^ keyPerspective);
+        int reply = TranspositionTable.move(entry);
+        return w.isLegal(reply) ? reply : Move.NONE;
+    }
+
+    /* deepens on the position until stop is set, the next search finds the results in the table
+       timeBudget is the one of the search that follows, 0 -> a fixed maxDepth search: then the entries
+       are kept exact like that search's, and deepening stops at maxDepth as deeper ones could not answer it */
+    public void ponder(World w, long timeBudget, AtomicBoolean stop)
+    {
+        world = new World();
+        world.copyFrom(w);
+        world.setMyColor(maximizer);
+
+        if (table != null)
+            table.newSearch();
 
-        Node selectedNode = maxValue(rootNode, MIN, MAX, 0, abPruning);
-        return selectedNode.getState().getLastMovePlayed();
+        exactDepth = timeBudget == 0;
+        stopSignal = stop;
+        aborted = false;
+        helperSearch(1, exactDepth ? maxDepth : MAX_ITERATIVE_DEPTH);
+        stopSignal = null;
     }
 
-    private Node maxValue(Node node, int a, int b, int depth, boolean abPruning)
+    public void setMoveOrdering(boolean on)
     {
-        World w = node.getState().getWorld();
-        if (w.terminalTest() || depth==maxDepth){
-            node.getState().setValue(w.evaluate(maximizer));
-            return node;
+        ordering = on ? new MoveOrdering(pickers.length) : null;
+    }
+
+    public void setQuiescence(boolean on)
+    {
+        quiescence = on;
+    }
+
+    // needs abPruning, the null windows are alpha-beta windows
+    public void setPrincipalVariationSearch(boolean on)
+    {
+        pvs = on;
+    }
+
+    // the cache may be shared with other searches
+    public void setEvalCache(EvalCache cache)
+    {
+        evalCache = cache;
+    }
+
+    // needs abPruning
+    public void setNullMovePruning(boolean on)
+    {
+        nullMove = on;
+    }
+
+    // needs abPruning
+    public void setLateMoveReductions(boolean on)
+    {
+        lmr = on;
+    }
+
+    public int alphaBeta(World w)
+    {
+        world = new World();
+        world.copyFrom(w);
+        world.setMyColor(maximizer);
+
+        if (table != null)
+            table.newSearch();
+
+        Thread[] helpers = startHelpers();
+
+        bestMove = Move.NONE;
+        maxValue(MIN, MAX, 0);
+
+        stopHelpers(helpers);
+        return bestMove;
+    }
+
+    private Thread[] startHelpers()
+    {
+        if (threads <= 1 || table == null)
+            return new Thread[0];
+
+        helpersStop = new AtomicBoolean(false);
+        Thread[] helpers = new Thread[threads - 1];
+
+        for (int i = 0; i < helpers.length; i++) {
+            Minimax helper = new Minimax(maximizer, maxDepth, abPruning, table);
+            if (ordering != null)
+                helper.setMoveOrdering(true);
+            helper.exactDepth = exactDepth;
+            helper.quiescence = quiescence;
+            helper.pvs = pvs;
+            helper.nullMove = nullMove;
+            helper.lmr = lmr;
+            helper.evalCache = evalCache;
+            helper.stopSignal = helpersStop;
+            helper.world = new World();
+            helper.world.copyFrom(world);
+
+            // every other helper starts one ply deeper, so that the threads do not all search the same nodes
+            int firstDepth = 1 + (i + 1) % 2;
+            helpers[i] = new Thread(() -> helper.helperSearch(firstDepth, MAX_ITERATIVE_DEPTH), "minimax-helper-" + (i + 1));
+            helpers[i].setDaemon(true);
+            helpers[i].start();
         }
+        return helpers;
+    }
 
-        node.expandNode();
-        Node maxNode = new Node();
-        maxNode.getState().setValue(Integer.MIN_VALUE);
+    // deepens until it is stopped or has searched lastDepth, its only result is what it leaves in the table
+    private void helperSearch(int firstDepth, int lastDepth)
+    {
+        for (int depth = firstDepth; depth <= lastDepth && !aborted; depth++) {
+            maxDepth = depth;
+            maxValue(MIN, MAX, 0);
+        }
+    }
 
-        for (Node child : node.getChildrenList()){
-            Node tmpNode = minValue(child, a, b,depth+1, abPruning);
-            if (tmpNode.getState().getValue() > maxNode.getState().getValue())
-                maxNode = tmpNode;
+    private void stopHelpers(Thread[] helpers)
+    {
+        if (helpers.length == 0)
+            return;
 
-            a = Math.max(a,tmpNode.getState().getValue());
+        helpersStop.set(true);
+        for (Thread helper : helpers) {
+            try {
+                helper.join();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private int maxValue(int a, int b, int depth)
+    {
+        if (isTimeUp())
+            return 0;
+        int endgame = probeTablebase(depth);
+        if (endgame != Tablebase.NOT_FOUND)
+            return endgame;
+        if (depth>=maxDepth && quiescence)
+            return quiescenceMax(a, b, depth);
+        if (world.terminalTest() || depth>=maxDepth)
+            return evaluate();
+
+        // the root is always searched, so that its best move is the one the plain search finds
+        long key = world.getHashKey() ^ keyPerspective;
+        int hashMove = Move.NONE;
+        if (table != null) {
+            long entry = table.probe(key);
+            if (entry != 0 && depth > 0 && isCutoff(entry, a, b, maxDepth - depth))
+                return TranspositionTable.score(entry);
+            hashMove = TranspositionTable.move(entry);
+        }
+        if (depth == 0 && rootFirstMove != Move.NONE)
+            hashMove = rootFirstMove;
+
+        if (b != MAX && canPass(depth)) {
+            world.makeNullMove();
+            int value = minValue(b - 1, b, depth + 1 + NULL_MOVE_REDUCTION);
+            world.unmake();
+            if (aborted)
+                return 0;
+            if (value >= b)
+                return value;
+        }
+
+        // without move ordering only the root's first move comes before the generator's order
+        int alpha = a;
+        MovePicker moves = pickers[depth];
+        moves.init(world, ordering, depth, ordering != null ? hashMove : depth == 0 ? rootFirstMove : Move.NONE);
+        int maxValue = MIN;
+        int maxMove = Move.NONE;
+        int searched = 0;
+
+        for (int move = moves.next(); move != Move.NONE; move = moves.next(), searched++){
+            world.make(move);
+            int value = 0;
+            boolean fullDepth = true;
+            if (isLateMove(move, searched, depth)) {
+                value = minValue(a, a + 1, depth+2);
+                fullDepth = value > a && !aborted;
+            }
+            if (fullDepth && pvs && abPruning && maxMove != Move.NONE) {
+                value = minValue(a, a + 1, depth+1);
+                if (value > a && value < b && !aborted)
+                    value = minValue(a, b, depth+1);
+            }
+            else if (fullDepth)
+                value = minValue(a, b, depth+1);
+            world.unmake();
+            if (aborted)
+                return 0;
+
+            if (value > maxValue) {
+                maxValue = value;
+                maxMove = move;
+            }
+
+            a = Math.max(a,value);
             if (b <= a && abPruning){
+                if (ordering != null)
+                    ordering.cutoff(move, depth, maxDepth - depth);
                 break;
             }
         }
 
-        if (node.getParent() != null){
-            node.getState().setValue(maxNode.getState().getValue());
-            return node;
-        }
-        else
-            return maxNode;
+        if (depth == 0)
+            bestMove = maxMove;
+        store(key, maxDepth - depth, maxValue, alpha, b, maxMove);
+        return maxValue;
     }
 
-    private Node minValue(Node node, int a, int b, int depth, boolean abPruning)
+    private int minValue(int a, int b, int depth)
     {
-        World w = node.getState().getWorld();
-        if (w.terminalTest() || depth==maxDepth){
-            node.getState().setValue(w.evaluate(maximizer));
-            return node;
+        if (isTimeUp())
+            return 0;
+        int endgame = probeTablebase(depth);
+        if (endgame != Tablebase.NOT_FOUND)
+            return endgame;
+        if (depth>=maxDepth && quiescence)
+            return quiescenceMin(a, b, depth);
+        if (world.terminalTest() || depth>=maxDepth)
+            return evaluate();
+
+        long key = world.getHashKey() ^ keyPerspective;
+        int hashMove = Move.NONE;
+        if (table != null) {
+            long entry = table.probe(key);
+            if (entry != 0 && isCutoff(entry, a, b, maxDepth - depth))
+                return TranspositionTable.score(entry);
+            hashMove = TranspositionTable.move(entry);
         }
 
-        node.expandNode();
-        Node minNode = new Node();
-        minNode.getState().setValue(Integer.MAX_VALUE);
+        if (a != MIN && canPass(depth)) {
+            world.makeNullMove();
+            int value = maxValue(a, a + 1, depth + 1 + NULL_MOVE_REDUCTION);
+            world.unmake();
+            if (aborted)
+                return 0;
+            if (value <= a)
+                return value;
+        }
 
-        for (Node child : node.getChildrenList()){
-            Node tmpNode = maxValue(child, a, b,depth+1, abPruning);
-            if (tmpNode.getState().getValue() < minNode.getState().getValue())
-                minNode = tmpNode;
+        int beta = b;
+        MovePicker moves = pickers[depth];
+        moves.init(world, ordering, depth, ordering != null ? hashMove : Move.NONE);
+        int minValue = MAX;
+        int minMove = Move.NONE;
+        int searched = 0;
 
-            b = Math.min(b,tmpNode.getState().getValue());
+        for (int move = moves.next(); move != Move.NONE; move = moves.next(), searched++){
+            world.make(move);
+            int value = 0;
+            boolean fullDepth = true;
+            if (isLateMove(move, searched, depth)) {
+                value = maxValue(b - 1, b, depth+2);
+                fullDepth = value < b && !aborted;
+            }
+            if (fullDepth && pvs && abPruning && minMove != Move.NONE) {
+                value = maxValue(b - 1, b, depth+1);
+                if (value < b && value > a && !aborted)
+                    value = maxValue(a, b, depth+1);
+            }
+            else if (fullDepth)
+                value = maxValue(a, b, depth+1);
+            world.unmake();
+            if (aborted)
+                return 0;
+
+            if (value < minValue) {
+                minValue = value;
+                minMove = move;
+            }
+
+            b = Math.min(b,value);
             if (b <= a && abPruning){
+                if (ordering != null)
+                    ordering.cutoff(move, depth, maxDepth - depth);
                 break;
             }
         }
-        node.getState().setValue(minNode.getState().getValue());
-        return node;
+
+        store(key, maxDepth - depth, minValue, a, beta, minMove);
+        return minValue;
     }
 
-}
+    // the value of a tablebase position, its subtree is not searched; Tablebase.NOT_FOUND at the root and outside the tablebase
+    private int probeTablebase(int depth)
+    {
+        if (depth == 0)
+            return Tablebase.NOT_FOUND;
+        int result = world.probeTablebase();
+        return result == Tablebase.NOT_FOUND ? result : world.evaluateEndgame(maximizer, result);
+    }
+
+    private int evaluate()
+    {
+        return evalCache != null ? evalCache.evaluate(world, maximizer) : world.evaluate(maximizer);
+    }
+
+    // whether the player to move may try a null move here: not at the root, not twice in a row,
+    // with a search of at least one ply left after the reduction and not with king and pawns only
+    private boolean canPass(int depth)
+    {
+        return nullMove && abPruning && depth > 0 && maxDepth - depth >= NULL_MOVE_REDUCTION + 2
+                && !world.isNullMovePlayed() && world.hasRooks(world.getMyColor());
+    }
+
+    // a quiet move sorted late enough to be searched with a reduced depth first
+    private boolean isLateMove(int move, int searched, int depth)
+    {
+        return lmr && abPruning && searched >= LMR_MOVES && maxDepth - depth >= LMR_DEPTH
+                && Move.captured(move) == Move.NONE;
+    }
+
+    // the maximizer to move: stands pat or captures
+    private int quiescenceMax(int a, int b, int depth)
+    {
+        if (isTimeUp())
+            return 0;
+        if (world.terminalTest())
+            return evaluate();
+
+        int standPat = evaluate();
+        if ((standPat >= b && abPruning) || depth == pickers.length - 1)
+            return standPat;
+
+        int maxValue = standPat;
+        a = Math.max(a, standPat);
+        MovePicker moves = pickers[depth];
+        moves.initCaptures(world, ordering, depth);
+
+        for (int move = moves.next(); move != Move.NONE; move = moves.next()){
+            // delta pruning: not even winning the captured part raises alpha
+            if (abPruning && standPat + CAPTURE_GAIN[Move.captured(move)] + DELTA_MARGIN <= a)
+                continue;
+
+            world.make(move);
+            int value = quiescenceMin(a, b, depth+1);
+            world.unmake();
+            if (aborted)
+                return 0;
+
+            maxValue = Math.max(maxValue, value);
+            a = Math.max(a, value);
+            if (b <= a && abPruning)
+                break;
+        }
+        return maxValue;
+    }
+
+    // the minimizer to move
+    private int quiescenceMin(int a, int b, int depth)
+    {
+        if (isTimeUp())
+            return 0;
+        if (world.terminalTest())
+            return evaluate();
+
+        int standPat = evaluate();
+        if ((standPat <= a && abPruning) || depth == pickers.length - 1)
+            return standPat;
 
+        int minValue = standPat;
+        b = Math.min(b, standPat);
+        MovePicker moves = pickers[depth];
+        moves.initCaptures(world, ordering, depth);
+
+        for (int move = moves.next(); move != Move.NONE; move = moves.next()){
+            if (abPruning && standPat - CAPTURE_GAIN[Move.captured(move)] - DELTA_MARGIN >= b)
+                continue;
+
+            world.make(move);
+            int value = quiescenceMax(a, b, depth+1);
+            world.unmake();
+            if (aborted)
+                return 0;
+
+            minValue = Math.min(minValue, value);
+            b = Math.min(b, value);
+            if (b <= a && abPruning)
+                break;
+        }
+        return minValue;
+    }
+
+    // the clock is read every 1024 nodes, once the deadline has passed the whole search unwinds
+    private boolean isTimeUp()
+    {
+        nodes++;
+        if ((nodes & 1023) == 0) {
+            if (stopSignal != null && stopSignal.get())
+                aborted = true;
+            else if (deadline != 0 && System.currentTimeMillis() >= deadline)
+                aborted = true;
+        }
+        return aborted;
+    }
+
+    /* a fixed depth search takes only entries searched to the same depth, a deeper result would differ
+       from what the plain search computes, iterative deepening takes deeper entries as well */
+    private boolean isCutoff(long entry, int a, int b, int depth)
+    {
+        int entryDepth = TranspositionTable.depth(entry);
+        if (entryDepth < depth || (exactDepth && entryDepth != depth))
+            return false;
+
+        int score = TranspositionTable.score(entry);
+        switch (TranspositionTable.bound(entry)) {
+            case TranspositionTable.EXACT:
+                return true;
+            case TranspositionTable.LOWER:
+                return score >= b;
+            default:
+                return score <= a;
+        }
+    }
+
+    // a and b are the window the node was searched with
+    private void store(long key, int depth, int value, int a, int b, int move)
+    {
+        if (table == null)
+            return;
+
+        int bound = TranspositionTable.EXACT;
+        if (value <= a)
+            bound = TranspositionTable.UPPER;
+        else if (value >= b)
+            bound = TranspositionTable.LOWER;
+        table.store(key, depth, bound, value, move);
+    }
+
+}
@@ -1,84 +1,393 @@
 package minimax_montecarlo;
 
+import tuc_chess.Move;
+import tuc_chess.MoveList;
+import tuc_chess.Tablebase;
 import tuc_chess.World;
 
 import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static minimax_montecarlo.SearchTree.ROOT;
 
 public class MonteCarloTreeSearch {
+    public static final int SEQUENTIAL = 0;
+    public static final int TREE_PARALLEL = 1;     // all threads search one shared tree
+    public static final int ROOT_PARALLEL = 2;     // every thread searches a tree of its own, merged at the root
+    public static final int LEAF_PARALLEL = 3;     // one tree, every leaf gets one rollout per thread
+
+    // pessimistic result a thread adds to the nodes it is exploring, so that the others pick different paths
+    private static final int VIRTUAL_LOSS = 10;
+
     private final int seconds;
     private final int noOfIterations;
     private final int playerColor;
 
     private final int maxDepth = 10;
 
-    public MonteCarloTreeSearch(int playerColor, int seconds, int noOfIterations){
+    // the positions and the move buffer every thread replays its paths and plays its rollouts on
+    private static final ThreadLocal<Rollout> rollouts = ThreadLocal.withInitial(Rollout::new);
+
+    private final int treeSize;
+    private final SearchTree tree;
+    private SearchTree[] workerTrees = new SearchTree[0];   // the trees of the other threads of a root parallel search
+    private final World rootWorld = new World();
+    private int lastMove = Move.NONE;     // the move of the last search, the tree is kept for the next one
+    private AtomicBoolean stopSignal = null;    // set when pondering has to stop
+    private int start = ROOT;                   // the node the search walks down from, the expected reply when pondering
+    private final World startWorld = new World();   // the position of the start node
+    private EvalCache evalCache = null;         // null -> every rollout end is evaluated again
+
+    private int threads = 1;
+    private int parallelism = SEQUENTIAL;
+
+    // treeSize is the memory of a search tree in MB, it is allocated once and reused by every search
+    // the search keeps what it finds under the move it plays and the opponent's reply for the next search
+    public MonteCarloTreeSearch(int playerColor, int seconds, int noOfIterations, int treeSize){
         this.playerColor = playerColor;
         this.seconds = seconds;
         this.noOfIterations = noOfIterations;
+        this.treeSize = treeSize;
+        this.tree = new SearchTree(treeSize);
     }
 
-    public String findNextMove(World world){
+    // parallelism is one of SEQUENTIAL, TREE_PARALLEL, ROOT_PARALLEL, LEAF_PARALLEL, used only with more than one thread
+    public void setParallelism(int parallelism, int threads){
+        this.parallelism = parallelism;
+        this.threads = threads;
+    }
+
+    // the cache may be shared with other searches
+    public void setEvalCache(EvalCache cache){
+        this.evalCache = cache;
+    }
+
+    public int findNextMove(World world){
         long start = System.currentTimeMillis();
-        long end = start + seconds * 1000L;
-        int iterations = 0;
 
-        Node rootNode = new Node();
-        rootNode.getState().setWorld(world);
-        rootNode.getState().setPlayerColor(playerColor);
+        stopSignal = null;
+        setRoot(world);
+        run(ROOT, rootWorld, start + seconds * 1000L, noOfIterations);
 
-        rootNode.expandNode();
+        lastMove = tree.move(getChildWithMaxValue(tree, ROOT));
+        return lastMove;
+    }
 
-        while (iterations < noOfIterations && System.currentTimeMillis() < end){
-            iterations++;
-            Node selectionNode;
-            if (rootNode.getState().getVisitCount() == 0)
-                selectionNode = rootNode.getRandomChildNode();
-            else
-                selectionNode = selectPromisingNode(rootNode);
+    // the reply the opponent is expected to answer the last move with, Move.NONE if the tree does not know one
+    public int expectedReply(){
+        int played = findChild(ROOT, lastMove);
+        if (played == -1 || tree.childCount(played) == 0)
+            return Move.NONE;
+
+        int best = tree.firstChild(played);
+        for (int reply = best + 1; reply < tree.firstChild(played) + tree.childCount(played); reply++)
+            if (tree.visits(reply) > tree.visits(best))
+                best = reply;
+        return tree.move(best);
+    }
+
+    // searches the position after the expected reply until stop is set, in the subtree of the reply's node:
+    // the root and lastMove stay, so the next findNextMove keeps the subtree of whichever reply has been played
+    public void ponder(World world, AtomicBoolean stop){
+        int reply = findReply(world);
+        if (reply == -1)
+            return;
+
+        stopSignal = stop;
+        expand(tree, reply, world);
+        run(reply, world, Long.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    // keeps the part of the tree that reaches the position of the world, if there is one
+    private void setRoot(World world){
+        int reusedRoot = rootWorld.getHashKey() == world.getHashKey() ? ROOT : findReply(world);
+        rootWorld.copyFrom(world);
+        if (reusedRoot != -1) {
+            tree.reroot(reusedRoot);
+            expandRoot(tree);
+        }
+        else
+            newRoot(tree);
+    }
+
+    // searches from the node, position is the one of the node
+    private void run(int start, World position, long end, int maxIterations){
+        AtomicInteger iterations = new AtomicInteger(maxIterations);
+        this.start = start;
+        startWorld.copyFrom(position);
 
-            if (selectionNode.getState().getVisitCount() != 0)
-                selectionNode.expandNode();
-            Node nodeToExplore = selectionNode;
-            if (selectionNode.getChildrenList().size() > 0) {
-                nodeToExplore = selectionNode.getRandomChildNode();
+        // the worker trees of a root parallel search merge at the root only, below it the threads share the tree
+        if (threads > 1 && (parallelism == TREE_PARALLEL || parallelism == ROOT_PARALLEL && start != ROOT)) {
+            Thread[] workers = new Thread[threads - 1];
+            for (int i = 0; i < workers.length; i++) {
+                workers[i] = new Thread(() -> search(tree, iterations, end, new Random(), null), "mcts-worker-" + (i + 1));
+                workers[i].start();
             }
-            int rolloutResult = simulateRollout(nodeToExplore);
-            backPropagation(nodeToExplore, rolloutResult);
+            search(tree, iterations, end, new Random(), null);
+            join(workers);
         }
+        else if (threads > 1 && parallelism == ROOT_PARALLEL) {
+            if (workerTrees.length != threads - 1) {
+                workerTrees = new SearchTree[threads - 1];
+                for (int i = 0; i < workerTrees.length; i++)
+                    workerTrees[i] = new SearchTree(treeSize);
+            }
+            Thread[] workers = new Thread[threads - 1];
+            for (int i = 0; i < workers.length; i++) {
+                SearchTree workerTree = workerTrees[i];
+                newRoot(workerTree);
+                workers[i] = new Thread(() -> search(workerTree, iterations, end, new Random(), null), "mcts-worker-" + (i + 1));
+                workers[i].start();
+            }
+            search(tree, iterations, end, new Random(), null);
+            join(workers);
+            for (SearchTree workerTree : workerTrees)
+                merge(tree, workerTree);
+        }
+        else if (threads > 1 && parallelism == LEAF_PARALLEL) {
+            ExecutorService pool = Executors.newFixedThreadPool(threads - 1, runnable -> {
+                Thread worker = new Thread(runnable, "mcts-rollout");
+                worker.setDaemon(true);
+                return worker;
+            });
+            try {
+                search(tree, iterations, end, new Random(), pool);
+            }
+            finally {
+                pool.shutdownNow();
+            }
+        }
+        else
+            search(tree, iterations, end, new Random(), null);
+    }
+
+    // the node under the last move played from the root that reaches the position of the world, -1 if there is none:
+    // the opponent has not answered with a move of the tree, the server has placed a new prize, or this is a new game
+    private int findReply(World world){
+        int played = findChild(ROOT, lastMove);
+        if (played == -1)
+            return -1;
+
+        World scratch = rollouts.get().path;
+        long key = world.getHashKey();
+        for (int reply = tree.firstChild(played); reply < tree.firstChild(played) + tree.childCount(played); reply++) {
+            scratch.copyFrom(rootWorld);
+            play(tree, played, scratch);
+            play(tree, reply, scratch);
+            if (scratch.getHashKey() == key)
+                return reply;
+        }
+        return -1;
+    }
+
+    // the child of the node the move leads to, -1 if it has none
+    private int findChild(int node, int move){
+        if (move == Move.NONE)
+            return -1;
+        for (int child = tree.firstChild(node); child < tree.firstChild(node) + tree.childCount(node); child++)
+            if (tree.move(child) == move)
+                return child;
+        return -1;
+    }
+
+    private void newRoot(SearchTree tree){
+        tree.reset();
+        expandRoot(tree);
+    }
 
-        //System.out.println(iterations);
-        Node bestNode = rootNode.getChildWithMaxValue();
-        return bestNode.getState().getLastMovePlayed();
+    private void expandRoot(SearchTree tree){
+        expand(tree, ROOT, rootWorld);
     }
 
-    private Node selectPromisingNode(Node rootNode) {
-        Node currentNode = rootNode;
+    // position is the one of the node
+    private void expand(SearchTree tree, int node, World position){
+        Rollout rollout = rollouts.get();
+
+        rollout.path.copyFrom(position);
+        rollout.path.generateMoves(rollout.moves);
+        tree.expand(node, rollout.moves);
+    }
+
+    // the loop every thread of the search runs, iterations are the ones left to all the threads
+    // with a rollout pool every leaf is played out once per thread and counts as one iteration
+    private void search(SearchTree tree, AtomicInteger iterations, long end, Random random, ExecutorService pool){
+        Rollout rollout = rollouts.get();
+        World world = rollout.path;
+
+        while (iterations.getAndDecrement() > 0 && System.currentTimeMillis() < end
+                && (stopSignal == null || !stopSignal.get())){
+            world.copyFrom(startWorld);
+
+            int selectionNode;
+            if (tree.visits(start) == 0 && tree.childCount(start) > 0)
+                selectionNode = play(tree, getRandomChildNode(tree, start, random), world);
+            else
+                selectionNode = selectPromisingNode(tree, world);
+
+            boolean visited = tree.visits(selectionNode) != 0;
+            for (int node = selectionNode; node != -1; node = tree.parent(node))
+                addVirtualLoss(tree, node);
+
+            if (visited && tree.childCount(selectionNode) == 0) {
+                world.generateMoves(rollout.moves);
+                tree.expand(selectionNode, rollout.moves);
+            }
+            int nodeToExplore = selectionNode;
+            if (tree.childCount(selectionNode) > 0) {
+                nodeToExplore = play(tree, getRandomChildNode(tree, selectionNode, random), world);
+                addVirtualLoss(tree, nodeToExplore);
+            }
+            if (pool == null)
+                backPropagation(tree, nodeToExplore, simulateRollout(world), 1);
+            else
+                backPropagation(tree, nodeToExplore, simulateRollouts(world, pool), threads);
+        }
+    }
+
+    // walks down the tree by UCT from the start node, playing the moves of the path on world
+    private int selectPromisingNode(SearchTree tree, World world) {
+        int currentNode = start;
         // while node is not a leaf node
-        while (currentNode.getChildrenList().size() != 0){
-            currentNode = UCT.findNodeWithMaxUCT(currentNode);
+        while (tree.childCount(currentNode) != 0){
+            currentNode = play(tree, UCT.findChildWithMaxUCT(tree, currentNode), world);
         }
         return currentNode;
     }
 
-    private int simulateRollout(Node node) {
+    // plays the move that leads to the node and passes the turn to the player of the node
+    private int play(SearchTree tree, int node, World world) {
+        world.performMove(tree.move(node));
+        world.setMyColor(playerColor(tree, node));
+        return node;
+    }
+
+    // the player to move at the node
+    private int playerColor(SearchTree tree, int node) {
+        if (node == ROOT)
+            return playerColor;
+        return Move.isBlack(tree.move(node)) ? 0 : 1;
+    }
+
+    private static int getRandomChildNode(SearchTree tree, int node, Random random) {
+        return tree.firstChild(node) + random.nextInt(tree.childCount(node));
+    }
+
+    // the first child with the best average result, an unvisited child counts as the best
+    private static int getChildWithMaxValue(SearchTree tree, int node) {
+        int first = tree.firstChild(node);
+        int best = first;
+        int bestReward = averageReward(tree.value(first), tree.visits(first));
+        for (int child = first + 1; child < first + tree.childCount(node); child++) {
+            int reward = averageReward(tree.value(child), tree.visits(child));
+            if (reward > bestReward) {
+                best = child;
+                bestReward = reward;
+            }
+        }
+        return best;
+    }
+
+    private static int averageReward(int value, int visitCount) {
+        if (visitCount == 0)
+            return Integer.MAX_VALUE;
+        return value/visitCount;
+    }
+
+    // plays random moves in place on the thread's own copy of the position, so a rollout allocates nothing
+    private int simulateRollout(World position) {
+        Rollout rollout = rollouts.get();
+        World world = rollout.world;
+        MoveList moves = rollout.moves;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
         int depth = 0;
-        Node tempNode = new Node(node);
-        State tempState = tempNode.getState();
 
-        while (!tempState.getWorld().terminalTest() && depth < maxDepth){
-            tempState.randomPlay();
+        world.copyFrom(position);
+        while (!world.terminalTest() && depth < maxDepth){
+            int result = world.probeTablebase();
+            if (result != Tablebase.NOT_FOUND)
+                return world.evaluateEndgame(playerColor, result);
+            world.generateMoves(moves);
+            world.setMyColor(1 - world.getMyColor());
+            if (moves.size() > 0)
+                world.performMove(moves.get(random.nextInt(moves.size())));
             depth++;
         }
-        return tempState.getWorld().evaluate(playerColor);
+        return evalCache != null ? evalCache.evaluate(world, playerColor) : world.evaluate(playerColor);
+    }
+
+    // plays <threads> rollouts from the position at once, returns the sum of their results
+    private int simulateRollouts(World position, ExecutorService pool) {
+        ArrayList<Future<Integer>> results = new ArrayList<>(threads - 1);
+        for (int i = 1; i < threads; i++)
+            results.add(pool.submit(() -> simulateRollout(position)));
+
+        int sum = simulateRollout(position);
+        for (Future<Integer> result : results) {
+            try {
+                sum += result.get();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+            catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        return sum;
+    }
+
+    // counts the visit of a node before its rollout has finished, backPropagation takes the loss back
+    private void addVirtualLoss(SearchTree tree, int node) {
+        tree.addVisits(node, 1);
+        if (playerColor(tree, node) != playerColor)
+            tree.addValue(node, -VIRTUAL_LOSS);
+    }
+
+    // value is the sum of <rollouts> results, addVirtualLoss has already counted one of the visits
+    private void backPropagation(SearchTree tree, int nodeToUpdate, int value, int rollouts) {
+        int currNode = nodeToUpdate;
+        while (currNode != -1) {
+            if (rollouts > 1)
+                tree.addVisits(currNode, rollouts - 1);
+            if (playerColor(tree, currNode) != playerColor)
+                tree.addValue(currNode, value + VIRTUAL_LOSS);
+            currNode = tree.parent(currNode);
+        }
+    }
+
+    // adds the statistics of the root children of another tree, both roots were expanded from the same world
+    private static void merge(SearchTree tree, SearchTree other) {
+        int first = tree.firstChild(ROOT);
+        int otherFirst = other.firstChild(ROOT);
+        for (int i = 0; i < tree.childCount(ROOT); i++) {
+            tree.addVisits(first + i, other.visits(otherFirst + i));
+            tree.addValue(first + i, other.value(otherFirst + i));
+        }
+    }
+
+    private static final class Rollout {
+        final World path = new World();
+        final World world = new World();
+        final MoveList moves = new MoveList();
     }
 
-    private void backPropagation(Node nodeToUpdate, int value) {
-        Node currNode = nodeToUpdate;
-        while (currNode != null) {
-            currNode.getState().increaseVisit();
-            if (currNode.getState().getPlayerColor() != playerColor)
-                currNode.getState().updateValue(value);
-            currNode = currNode.getParent();
+    private static void join(Thread[] workers) {
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
         }
     }
 
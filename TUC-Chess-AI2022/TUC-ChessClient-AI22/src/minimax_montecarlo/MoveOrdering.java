@@ -0,0 +1,93 @@
+package minimax_montecarlo;
+
+import tuc_chess.Move;
+import tuc_chess.MoveList;
+import tuc_chess.MoveTables;
+
+/* sorts the moves of a node so that alpha-beta finds its cutoffs early:
+   the hash move first, then the captures by most valuable victim / least valuable attacker,
+   then the quiet moves by the two killer moves of the ply and by the history heuristic */
+public class MoveOrdering {
+    private static final int HASH_MOVE = 1 << 30;
+    private static final int CAPTURE = 1 << 29;
+    private static final int KILLER_1 = 1 << 28;
+    private static final int KILLER_2 = KILLER_1 - 1;
+    private static final int MAX_HISTORY = KILLER_2 - 1;
+
+    // the points performMove gives for each captured chess part: none, pawn, rook, king, prize
+    private static final int[] VALUES = {0, 1, 3, 8, 1};
+
+    private final int[][] killers;
+    private final int[][][] history = new int[2][MoveTables.SQUARES][MoveTables.SQUARES];  // [color][from][to]
+    private final int[] scores = new int[MoveList.MAX_MOVES];
+
+    public MoveOrdering(int maxPly)
+    {
+        killers = new int[maxPly + 1][2];
+    }
+
+    public void sort(MoveList moves, int ply, int hashMove)
+    {
+        int size = moves.size();
+
+        for (int i = 0; i < size; i++)
+            scores[i] = score(moves.get(i), ply, hashMove);
+
+        // insertion sort, stable so equal moves keep the order of the generator
+        for (int i = 1; i < size; i++) {
+            int move = moves.get(i);
+            int score = scores[i];
+            int j = i - 1;
+            while (j >= 0 && scores[j] < score) {
+                moves.set(j + 1, moves.get(j));
+                scores[j + 1] = scores[j];
+                j--;
+            }
+            moves.set(j + 1, move);
+            scores[j + 1] = score;
+        }
+    }
+
+    private int score(int move, int ply, int hashMove)
+    {
+        if (move == hashMove)
+            return HASH_MOVE;
+
+        int captured = Move.captured(move);
+        if (captured != Move.NONE)
+            return CAPTURE + VALUES[captured] * 16 - VALUES[Move.piece(move)];
+
+        if (move == killers[ply][0])
+            return KILLER_1;
+        if (move == killers[ply][1])
+            return KILLER_2;
+        return history[color(move)][Move.from(move)][Move.to(move)];
+    }
+
+    // a quiet move caused a beta cutoff at this ply with <depth> plies left to search
+    public void cutoff(int move, int ply, int depth)
+    {
+        if (Move.captured(move) != Move.NONE)
+            return;
+
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+
+        int[] fromHistory = history[color(move)][Move.from(move)];
+        fromHistory[Move.to(move)] += depth * depth;
+
+        // keep the history below the killer scores
+        if (fromHistory[Move.to(move)] > MAX_HISTORY)
+            for (int[][] colorHistory : history)
+                for (int[] row : colorHistory)
+                    for (int k = 0; k < row.length; k++)
+                        row[k] /= 2;
+    }
+
+    private static int color(int move)
+    {
+        return Move.isBlack(move) ? 1 : 0;
+    }
+}
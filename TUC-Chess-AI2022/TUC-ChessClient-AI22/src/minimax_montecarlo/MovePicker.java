@@ -0,0 +1,86 @@
+package minimax_montecarlo;
+
+import tuc_chess.Move;
+import tuc_chess.MoveList;
+import tuc_chess.World;
+
+/* hands out the moves of a minimax node one at a time, generating them only when they are needed:
+   the hash move is searched before anything is generated, so a cutoff on it costs no move generation,
+   then with move ordering the stages of World.generateStage follow, each sorted by MoveOrdering
+   and generated only once the one before is used up, so a cutoff on a capture skips the quiet moves
+   (every capture scores above every quiet move, so the order is the one of sorting all the moves at once)
+   without move ordering all the moves follow in the order of the generator
+   the hash move is not handed out twice */
+public class MovePicker {
+    private static final int HASH_MOVE = -1;
+    private static final int ALL_MOVES = 3;
+    private static final int CAPTURE_MOVES = 4;
+    private static final int DONE = 5;
+
+    private final MoveList moves = new MoveList();
+    private World world;
+    private MoveOrdering ordering;
+    private int ply;
+    private int hashMove;
+    private int stage;
+    private int index;
+
+    // ordering may be null, hashMove may be Move.NONE or a move of another position
+    public void init(World world, MoveOrdering ordering, int ply, int hashMove)
+    {
+        this.world = world;
+        this.ordering = ordering;
+        this.ply = ply;
+        this.hashMove = world.isLegal(hashMove) ? hashMove : Move.NONE;
+        this.stage = this.hashMove != Move.NONE ? HASH_MOVE : firstStage();
+        this.moves.clear();
+        this.index = 0;
+    }
+
+    // hands out only the captures and the prize grabs, for the quiescence search
+    public void initCaptures(World world, MoveOrdering ordering, int ply)
+    {
+        this.world = world;
+        this.ordering = ordering;
+        this.ply = ply;
+        this.hashMove = Move.NONE;
+        this.stage = CAPTURE_MOVES;
+        this.moves.clear();
+        this.index = 0;
+    }
+
+    // the next move to search, Move.NONE once all of them have been handed out
+    public int next()
+    {
+        if (stage == HASH_MOVE) {
+            stage = firstStage();
+            return hashMove;
+        }
+
+        while (true) {
+            while (index < moves.size()) {
+                int move = moves.get(index++);
+                if (move != hashMove)
+                    return move;
+            }
+            if (stage == DONE)
+                return Move.NONE;
+
+            if (stage == ALL_MOVES)
+                world.generateMoves(moves);
+            else if (stage == CAPTURE_MOVES)
+                world.generateCaptures(moves);
+            else
+                world.generateStage(moves, stage);
+            if (ordering != null)
+                ordering.sort(moves, ply, hashMove);
+            index = 0;
+            stage = stage < World.QUIETS ? stage + 1 : DONE;
+        }
+    }
+
+    private int firstStage()
+    {
+        return ordering != null ? World.KING_CAPTURES : ALL_MOVES;
+    }
+}
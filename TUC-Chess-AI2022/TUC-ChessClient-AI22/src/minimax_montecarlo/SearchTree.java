@@ -0,0 +1,164 @@
+package minimax_montecarlo;
+
+import tuc_chess.Move;
+import tuc_chess.MoveList;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/* the nodes of a monte carlo search tree in preallocated arrays, a node is an index into them
+   node 0 is the root, the children of a node take consecutive indexes starting at its first child
+   a node keeps only the move that leads to it, its position is replayed from the root position
+   nodes are taken by bumping a counter and are all given back at once by reset(),
+   or all but a subtree by reroot() */
+public class SearchTree {
+    public static final int ROOT = 0;
+
+    private static final int NODE_BYTES = 28;
+    private static final int EXPANDING = -1;   // the child count of a node while a thread adds its children
+
+    private final AtomicIntegerArray visits;
+    private final AtomicIntegerArray values;
+    private final int[] firstChild;
+    private final AtomicIntegerArray childCount;   // set after the children, it publishes them to the other threads
+                                                   // claiming it from 0 to EXPANDING gives a node to one thread only
+    private final int[] move;
+    private final int[] parent;
+    private final int[] relocation;    // where reroot() moves every node, -1 for the ones it drops
+    private final AtomicInteger size = new AtomicInteger(1);
+    private final int capacity;
+
+    public SearchTree(int sizeMB)
+    {
+        capacity = (int) Math.max(MoveList.MAX_MOVES + 1, Math.min(1 << 30, (long) sizeMB * 1024 * 1024 / NODE_BYTES));
+
+        visits = new AtomicIntegerArray(capacity);
+        values = new AtomicIntegerArray(capacity);
+        firstChild = new int[capacity];
+        childCount = new AtomicIntegerArray(capacity);
+        move = new int[capacity];
+        parent = new int[capacity];
+        relocation = new int[capacity];
+        reset();
+    }
+
+    // leaves only an unvisited root in the tree
+    public void reset()
+    {
+        size.set(1);
+        visits.set(ROOT, 0);
+        values.set(ROOT, 0);
+        childCount.set(ROOT, 0);
+        move[ROOT] = Move.NONE;
+        parent[ROOT] = -1;
+    }
+
+    // makes the node the root, drops the rest of the tree and moves the subtree to the front of the arrays
+    // every node of the subtree comes after its parent, so moving them in order overwrites only nodes already moved
+    // to be called while no search runs on the tree
+    public void reroot(int node)
+    {
+        int end = size();
+        int next = 0;
+
+        for (int i = node; i < end; i++) {
+            int oldParent = parent[i];
+            if (i != node && (oldParent < node || relocation[oldParent] == -1)) {
+                relocation[i] = -1;
+                continue;
+            }
+            relocation[i] = next;
+
+            int newParent = i == node ? -1 : relocation[oldParent];
+            visits.set(next, visits.get(i));
+            values.set(next, values.get(i));
+            firstChild[next] = firstChild[i];
+            childCount.set(next, childCount.get(i));
+            move[next] = i == node ? Move.NONE : move[i];
+            parent[next] = newParent;
+
+            // the first child of the parent still has its old index
+            if (newParent != -1 && firstChild[newParent] == i)
+                firstChild[newParent] = next;
+            next++;
+        }
+        size.set(next);
+    }
+
+    /* adds a child for every move of the list, unless the node already has children or the tree is full
+       without a lock: the thread that claims the node reserves its slots by bumping the size, the threads
+       that lose the claim return at once and see no children until the claiming thread publishes them */
+    public void expand(int node, MoveList moves)
+    {
+        int count = moves.size();
+        if (count == 0 || size.get() + count > capacity || !childCount.compareAndSet(node, 0, EXPANDING))
+            return;
+
+        // another thread may have filled the tree since the check, the slots past capacity stay unused
+        int first = size.getAndAdd(count);
+        if (first + count > capacity) {
+            childCount.set(node, 0);
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            int child = first + i;
+            visits.set(child, 0);
+            values.set(child, 0);
+            childCount.set(child, 0);
+            move[child] = moves.get(i);
+            parent[child] = node;
+        }
+        firstChild[node] = first;
+        childCount.set(node, count);
+    }
+
+    // the reservations of a full tree can take the counter past capacity
+    public int size()
+    {
+        return Math.min(size.get(), capacity);
+    }
+
+    public int visits(int node)
+    {
+        return visits.get(node);
+    }
+
+    public void addVisits(int node, int count)
+    {
+        visits.addAndGet(node, count);
+    }
+
+    public int value(int node)
+    {
+        return values.get(node);
+    }
+
+    public void addValue(int node, int value)
+    {
+        values.addAndGet(node, value);
+    }
+
+    public int firstChild(int node)
+    {
+        return firstChild[node];
+    }
+
+    // 0 while another thread is adding the children
+    public int childCount(int node)
+    {
+        int count = childCount.get(node);
+        return count == EXPANDING ? 0 : count;
+    }
+
+    // the move that leads from the parent to the node, Move.NONE for the root
+    public int move(int node)
+    {
+        return move[node];
+    }
+
+    // -1 for the root
+    public int parent(int node)
+    {
+        return parent[node];
+    }
+}
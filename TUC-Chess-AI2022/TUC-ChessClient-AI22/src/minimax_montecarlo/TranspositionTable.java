@@ -0,0 +1,92 @@
+package minimax_montecarlo;
+
+/* fixed size hash table of the positions minimax has searched, in buckets of two slots:
+   the first slot keeps the deepest search, the second one is always replaced
+   an entry packs the score (bits 0-31), the best move (bits 32-50), the depth searched (bits 51-58),
+   the bound type (bits 59-60) and the search it was stored in (bits 61-63)
+   the table is shared by the threads of a parallel search without locking: a slot keeps key ^ entry,
+   so an entry that one thread has half overwritten while another one reads it does not match its key */
+public class TranspositionTable {
+    public static final int EXACT = 1;
+    public static final int LOWER = 2;   // the score is a lower bound of the real value (beta cutoff)
+    public static final int UPPER = 3;   // the score is an upper bound of the real value (no move raised alpha)
+
+    private static final int ENTRY_BYTES = 16;
+
+    private final long[] keys;
+    private final long[] entries;
+    private final int bucketMask;
+    private int age = 0;
+
+    public TranspositionTable(int sizeMB)
+    {
+        long slots = Math.max(2, (long) sizeMB * 1024 * 1024 / ENTRY_BYTES);
+        int buckets = Integer.highestOneBit((int) Math.min(slots / 2, 1 << 30));
+
+        keys = new long[buckets * 2];
+        entries = new long[buckets * 2];
+        bucketMask = buckets - 1;
+    }
+
+    // to be called before every search, entries of older searches get replaced first
+    public void newSearch()
+    {
+        age = (age + 1) & 0x7;
+    }
+
+    // returns the packed entry of the position, 0 if it is not in the table
+    public long probe(long key)
+    {
+        int slot = ((int) key & bucketMask) << 1;
+
+        for (int i = slot; i < slot + 2; i++) {
+            long entry = entries[i];
+            if (entry != 0 && (keys[i] ^ entry) == key)
+                return entry;
+        }
+        return 0L;
+    }
+
+    public void store(long key, int depth, int bound, int score, int move)
+    {
+        int slot = ((int) key & bucketMask) << 1;
+        long entry = (score & 0xFFFFFFFFL) | ((long) move << 32) | ((long) depth << 51)
+                | ((long) bound << 59) | ((long) age << 61);
+
+        // depth-preferred slot: same position, a search at least as deep, or an entry of an older search
+        long old = entries[slot];
+        if ((keys[slot] ^ old) == key || old == 0 || depth >= depth(old) || age(old) != age) {
+            keys[slot] = key ^ entry;
+            entries[slot] = entry;
+        }
+        else {
+            keys[slot + 1] = key ^ entry;
+            entries[slot + 1] = entry;
+        }
+    }
+
+    public static int score(long entry)
+    {
+        return (int) entry;
+    }
+
+    public static int move(long entry)
+    {
+        return (int) (entry >>> 32) & 0x7FFFF;
+    }
+
+    public static int depth(long entry)
+    {
+        return (int) (entry >>> 51) & 0xFF;
+    }
+
+    public static int bound(long entry)
+    {
+        return (int) (entry >>> 59) & 0x3;
+    }
+
+    private static int age(long entry)
+    {
+        return (int) (entry >>> 61) & 0x7;
+    }
+}
@@ -1,8 +1,5 @@
 package minimax_montecarlo;
 
-import java.util.Collections;
-import java.util.Comparator;
-
 public class UCT {
     private static final double Cp = Math.sqrt(2);
 
@@ -12,17 +9,19 @@ public class UCT {
         return (double)(value/nodeVisits) + Cp * Math.sqrt(Math.log(parentVisits)/nodeVisits);
     }
 
-    public static Node findNodeWithMaxUCT(Node node){
-        Comparator<Node> compareUCTs = new Comparator<Node>() {
-            @Override
-            public int compare(Node n1, Node n2) {
-                int parentVisits = n1.getParent().getState().getVisitCount();
-                double uct1 = uctValue(n1.getState().getValue(), parentVisits, n1.getState().getVisitCount());
-                double uct2 = uctValue(n2.getState().getValue(), parentVisits, n2.getState().getVisitCount());
-
-                return Double.compare(uct1,uct2);
+    // the first child with the greatest UCT value
+    public static int findChildWithMaxUCT(SearchTree tree, int node){
+        int parentVisits = tree.visits(node);
+        int first = tree.firstChild(node);
+        int best = first;
+        double bestUct = uctValue(tree.value(first), parentVisits, tree.visits(first));
+        for (int child = first + 1; child < first + tree.childCount(node); child++) {
+            double uct = uctValue(tree.value(child), parentVisits, tree.visits(child));
+            if (Double.compare(uct, bestUct) > 0) {
+                best = child;
+                bestUct = uct;
             }
-        };
-        return Collections.max(node.getChildrenList(), compareUCTs);
+        }
+        return best;
     }
 }
\ No newline at end of file
@@ -121,7 +121,7 @@ public class Client
 						// beginning of the game
 						if(myColor == 0)
 						{
-							String action = world.selectAction();
+							int action = world.selectAction();
 							
 							try
 							{
@@ -135,7 +135,7 @@ public class Client
 								System.out.println(e.getClass().getName() + " : " + e.getMessage());
 							}
 							
-							sendData = action.getBytes("UTF-8");
+							sendData = moveToString(action).getBytes("UTF-8");
 							sendPacket.setData(sendData);
 							sendPacket.setLength(sendData.length);
 							clientSocket.send(sendPacket);
@@ -145,6 +145,8 @@ public class Client
 					}
 					else	// secondLetter.equals("E") - the game has ended
 					{
+						world.stopPondering();
+						
 						scoreWhite = Integer.parseInt(Character.toString(receivedMsg.charAt(2))
 								                    + Character.toString(receivedMsg.charAt(3)));
 						
@@ -175,6 +177,9 @@ public class Client
 							
 							System.out.println("My average branch factor was : " + world.getAvgBFactor());
 						}
+						
+						if(world.hasEvalCache())
+							System.out.println("My evaluation cache hit rate was : " + world.getEvalCacheHitRate());
 							
 						break;
 					}
@@ -198,11 +203,13 @@ public class Client
 					scoreBlack = Integer.parseInt(Character.toString(receivedMsg.charAt(10)) 
 												  + Character.toString(receivedMsg.charAt(11)));
 					
+					// the real move has arrived, the world can change
+					world.stopPondering();
 					world.makeMove(x1,y1,x2,y2,prizeX,prizeY, scoreWhite, scoreBlack);
 					
 					if(nextPlayer==myColor)
 					{
-						String action = world.selectAction();
+						int action = world.selectAction();
 						
 						try
 						{
@@ -216,13 +223,15 @@ public class Client
 							System.out.println(e.getClass().getName() + " : " + e.getMessage());
 						}
 						
-						sendData = action.getBytes("UTF-8");
+						sendData = moveToString(action).getBytes("UTF-8");
 						sendPacket.setData(sendData);
 						sendPacket.setLength(sendData.length);
 						clientSocket.send(sendPacket);			
 					}
 					else
 					{
+						// our move has been played, think on the opponent's time
+						world.startPondering();
 						continue;
 					}				
 				}
@@ -235,6 +244,13 @@ public class Client
 		}
 	}
 	
+	// the server expects a move as the 4 digits x1 y1 x2 y2
+	private String moveToString(int move)
+	{
+		return Integer.toString(Move.fromRow(move)) + Integer.toString(Move.fromColumn(move))
+			   + Integer.toString(Move.toRow(move)) + Integer.toString(Move.toColumn(move));
+	}
+	
 	public int getScoreWhite()
 	{
 		return scoreWhite;
@@ -0,0 +1,80 @@
+package tuc_chess;
+
+/* a move packed in an int
+   bits 0-5   : from square (row*columns + column)
+   bits 6-11  : to square
+   bits 12-13 : moved chess part
+   bits 14-16 : captured chess part or prize (NONE if the target square is empty)
+   bits 17-18 : flags */
+public final class Move
+{
+	public static final int NONE = 0;		// no move, no chess part captured
+	public static final int PAWN = 1;
+	public static final int ROOK = 2;
+	public static final int KING = 3;
+	public static final int PRIZE = 4;
+
+	public static final int BLACK = 1 << 17;		// the move is played by the black player
+	public static final int LEAVES = 1 << 18;		// a pawn reaches the last row and leaves the board
+
+	private static final int columns = 5;	// same square numbering as World
+
+	private Move()
+	{
+	}
+
+	public static int encode(int from, int to, int piece, int captured, int flags)
+	{
+		return from | (to << 6) | (piece << 12) | (captured << 14) | flags;
+	}
+
+	public static int from(int move)
+	{
+		return move & 0x3F;
+	}
+
+	public static int to(int move)
+	{
+		return (move >>> 6) & 0x3F;
+	}
+
+	public static int piece(int move)
+	{
+		return (move >>> 12) & 0x3;
+	}
+
+	public static int captured(int move)
+	{
+		return (move >>> 14) & 0x7;
+	}
+
+	public static boolean isBlack(int move)
+	{
+		return (move & BLACK) != 0;
+	}
+
+	public static boolean leavesBoard(int move)
+	{
+		return (move & LEAVES) != 0;
+	}
+
+	public static int fromRow(int move)
+	{
+		return from(move) / columns;
+	}
+
+	public static int fromColumn(int move)
+	{
+		return from(move) % columns;
+	}
+
+	public static int toRow(int move)
+	{
+		return to(move) / columns;
+	}
+
+	public static int toColumn(int move)
+	{
+		return to(move) % columns;
+	}
+}
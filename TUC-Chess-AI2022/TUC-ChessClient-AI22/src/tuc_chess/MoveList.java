@@ -0,0 +1,41 @@
+package tuc_chess;
+
+// preallocated buffer of packed moves (see Move), filled again by the move generator on every use
+public class MoveList
+{
+	// a side has at most 2 rooks (12 moves), a king (4 moves) and 7 pawns (3 moves)
+	public static final int MAX_MOVES = 64;
+
+	private final int[] moves = new int[MAX_MOVES];
+	private int size = 0;
+
+	public void clear()
+	{
+		size = 0;
+	}
+
+	public void add(int move)
+	{
+		moves[size++] = move;
+	}
+
+	public int get(int index)
+	{
+		return moves[index];
+	}
+
+	public void set(int index, int move)
+	{
+		moves[index] = move;
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+}
@@ -0,0 +1,109 @@
+package tuc_chess;
+
+import java.util.Arrays;
+
+// per square move patterns of the chess parts, computed once for the 7x5 board
+public final class MoveTables
+{
+	public static final int ROWS = 7;
+	public static final int COLUMNS = 5;
+	public static final int SQUARES = ROWS * COLUMNS;
+	public static final int ROOK_BLOCKS = 3;	// rook can move towards <ROOK_BLOCKS> blocks in any vertical or horizontal direction
+
+	// direction offsets in the order the moves are generated: upwards, downwards, on the left, on the right
+	private static final int[] DI = {-1, 1, 0, 0};
+	private static final int[] DJ = {0, 0, -1, 1};
+
+	// ROOK_RAYS[square][direction] : the squares a rook passes over, nearest first
+	public static final int[][][] ROOK_RAYS = new int[SQUARES][4][];
+
+	// KING_STEPS[square] : the squares next to it, in generation order
+	public static final int[][] KING_STEPS = new int[SQUARES][];
+	public static final long[] KING_MASKS = new long[SQUARES];
+
+	// PAWN_PUSH[color][square] : the square a pawn steps forward to
+	public static final int[][] PAWN_PUSH = new int[2][SQUARES];
+
+	// PAWN_CAPTURES[color][square] : the crosswise squares a pawn can only move to by capturing, left first
+	public static final int[][][] PAWN_CAPTURES = new int[2][SQUARES][];
+
+	// PAWN_ATTACKERS[color][square] : the squares from which a pawn of that color can capture on the square
+	public static final long[][] PAWN_ATTACKERS = new long[2][SQUARES];
+
+	// LAST_ROW[color] : the row where a pawn of that color leaves the board
+	public static final long[] LAST_ROW = new long[2];
+
+	static
+	{
+		for(int j=0; j<COLUMNS; j++)
+		{
+			LAST_ROW[0] |= 1L << j;
+			LAST_ROW[1] |= 1L << ((ROWS-1)*COLUMNS + j);
+		}
+
+		for(int i=0; i<ROWS; i++)
+		{
+			for(int j=0; j<COLUMNS; j++)
+			{
+				int square = i*COLUMNS + j;
+
+				int[] steps = new int[4];
+				int nSteps = 0;
+
+				for(int d=0; d<4; d++)
+				{
+					int[] ray = new int[ROOK_BLOCKS];
+					int length = 0;
+
+					for(int k=1; k<=ROOK_BLOCKS; k++)
+					{
+						int x = i + DI[d]*k;
+						int y = j + DJ[d]*k;
+
+						if(x < 0 || x >= ROWS || y < 0 || y >= COLUMNS)
+							break;
+						ray[length++] = x*COLUMNS + y;
+					}
+					ROOK_RAYS[square][d] = Arrays.copyOf(ray, length);
+
+					if(length > 0)
+					{
+						steps[nSteps++] = ray[0];
+						KING_MASKS[square] |= 1L << ray[0];
+					}
+				}
+				KING_STEPS[square] = Arrays.copyOf(steps, nSteps);
+
+				// pawns never stand on their last row, those entries are left unused
+				for(int color=0; color<2; color++)
+				{
+					int x = color == 0 ? i-1 : i+1;
+
+					if(x < 0 || x >= ROWS)
+					{
+						PAWN_PUSH[color][square] = -1;
+						PAWN_CAPTURES[color][square] = new int[0];
+						continue;
+					}
+
+					PAWN_PUSH[color][square] = x*COLUMNS + j;
+
+					int[] captures = new int[2];
+					int nCaptures = 0;
+					if(j != 0)
+						captures[nCaptures++] = x*COLUMNS + j-1;
+					if(j != COLUMNS-1)
+						captures[nCaptures++] = x*COLUMNS + j+1;
+
+					PAWN_CAPTURES[color][square] = Arrays.copyOf(captures, nCaptures);
+					for(int k=0; k<nCaptures; k++)
+						PAWN_ATTACKERS[color][captures[k]] |= 1L << square;
+				}
+			}
+		}
+	}
+
+	private MoveTables()
+	{
+	}
+}
@@ -0,0 +1,167 @@
+package tuc_chess;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/* endgame tablebase of the positions with both kings, no prizes and up to maxParts other chess parts,
+   written by TablebaseGenerator and memory-mapped by open()
+   a result is for the player to move and counts plies up to the capture of a king:
+   d > 0 captures the opponent's king in d plies, d < 0 loses its own in -d plies, 0 is a draw
+   the file is a header (MAGIC, VERSION, maxParts) followed by one table per material signature,
+   a signature is the number of white pawns, white rooks, black pawns and black rooks,
+   the signatures come in the order of layout() and every position of a table is one byte at index() */
+public final class Tablebase
+{
+	public static final int NOT_FOUND = Integer.MIN_VALUE;
+	public static final String FILE = "tuc-chess.tb";
+
+	static final int MAGIC = 0x54554354;	// "TUCT"
+	static final int VERSION = 1;
+	static final int HEADER_BYTES = 12;
+	static final int MAX_PARTS = 3;		// an index of 4 chess parts besides the kings does not fit an int
+	static final int MAX_PAWNS = 7;
+	static final int MAX_ROOKS = 2;
+	static final int GROUPS = 4;			// white pawns, white rooks, black pawns, black rooks
+
+	private final int maxParts;
+	private final ByteBuffer[] tables;		// by signature(), null for the ones that cannot occur
+
+	private Tablebase(int maxParts, ByteBuffer[] tables)
+	{
+		this.maxParts = maxParts;
+		this.tables = tables;
+	}
+
+	// maps the tablebase file, null when there is none or it cannot be read
+	public static Tablebase open(String file)
+	{
+		Path path = Paths.get(file);
+		if(!Files.isRegularFile(path))
+			return null;
+
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+		{
+			if(channel.size() < HEADER_BYTES)
+				throw new IOException(file + " is not a tablebase");
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+			if(header.getInt() != MAGIC || header.getInt() != VERSION)
+				throw new IOException(file + " is not a tablebase of this version");
+
+			int maxParts = header.getInt();
+			if(maxParts < 0 || maxParts > MAX_PARTS)
+				throw new IOException(file + " has tables of " + maxParts + " chess parts");
+			long[] offsets = layout(maxParts);
+			if(channel.size() != HEADER_BYTES + offsets[offsets.length-1])
+				throw new IOException(file + " has the wrong size");
+
+			// one mapping per table, a single one could not hold more than 2 GB
+			ByteBuffer[] tables = new ByteBuffer[offsets.length - 1];
+			for(int s=0; s<tables.length; s++)
+			{
+				long size = offsets[s+1] - offsets[s];
+				if(size > 0)
+					tables[s] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + offsets[s], size);
+			}
+			return new Tablebase(maxParts, tables);
+		}
+		catch(IOException e)
+		{
+			System.out.println(e.getClass().getName() + " : " + e.getMessage());
+			return null;
+		}
+	}
+
+	public int maxParts()
+	{
+		return maxParts;
+	}
+
+	// the result of the position for the player to move, NOT_FOUND when it has too many chess parts
+	// the position must have both kings and no prizes
+	public int probe(long white, long black, long pawns, long rooks, long kings, int color)
+	{
+		int wp = Long.bitCount(white & pawns);
+		int wr = Long.bitCount(white & rooks);
+		int bp = Long.bitCount(black & pawns);
+		int br = Long.bitCount(black & rooks);
+
+		if(wp + wr + bp + br > maxParts || wp > MAX_PAWNS || wr > MAX_ROOKS || bp > MAX_PAWNS || br > MAX_ROOKS)
+			return NOT_FOUND;
+		return tables[signature(maxParts, wp, wr, bp, br)].get(index(white, black, pawns, rooks, kings, color));
+	}
+
+	static int signature(int maxParts, int wp, int wr, int bp, int br)
+	{
+		int radix = maxParts + 1;
+		return ((wp*radix + wr)*radix + bp)*radix + br;
+	}
+
+	// whether a signature of that many chess parts of each group can occur, counts[] in the order of GROUPS
+	static boolean exists(int maxParts, int[] counts)
+	{
+		return counts[0] + counts[1] + counts[2] + counts[3] <= maxParts
+				&& counts[0] <= MAX_PAWNS && counts[1] <= MAX_ROOKS && counts[2] <= MAX_PAWNS && counts[3] <= MAX_ROOKS;
+	}
+
+	// the counts of every group in a signature
+	static int[] counts(int maxParts, int signature)
+	{
+		int radix = maxParts + 1;
+		int[] counts = new int[GROUPS];
+		for(int g=GROUPS-1; g>=0; g--)
+		{
+			counts[g] = signature % radix;
+			signature /= radix;
+		}
+		return counts;
+	}
+
+	// the offset of every table after the header, by signature(), and the end of the last one at the end
+	static long[] layout(int maxParts)
+	{
+		int signatures = (int) Math.pow(maxParts + 1, GROUPS);
+		long[] offsets = new long[signatures + 1];
+
+		for(int s=0; s<signatures; s++)
+		{
+			int[] counts = counts(maxParts, s);
+			offsets[s+1] = offsets[s] + (exists(maxParts, counts) ? size(counts[0] + counts[1] + counts[2] + counts[3]) : 0);
+		}
+		return offsets;
+	}
+
+	// the positions of a table with <parts> chess parts besides the kings
+	static int size(int parts)
+	{
+		int size = 2 * MoveTables.SQUARES * MoveTables.SQUARES;
+		for(int k=0; k<parts; k++)
+			size *= MoveTables.SQUARES;
+		return size;
+	}
+
+	/* the position in its table: the player to move, the white king, the black king
+	   and the squares of every group in the order of GROUPS, the squares of a group in ascending order,
+	   all of them as digits of a number in base MoveTables.SQUARES */
+	static int index(long white, long black, long pawns, long rooks, long kings, int color)
+	{
+		int index = color;
+		index = index*MoveTables.SQUARES + Long.numberOfTrailingZeros(white & kings);
+		index = index*MoveTables.SQUARES + Long.numberOfTrailingZeros(black & kings);
+		index = addSquares(index, white & pawns);
+		index = addSquares(index, white & rooks);
+		index = addSquares(index, black & pawns);
+		return addSquares(index, black & rooks);
+	}
+
+	private static int addSquares(int index, long parts)
+	{
+		for(; parts != 0; parts &= parts - 1)
+			index = index*MoveTables.SQUARES + Long.numberOfTrailingZeros(parts);
+		return index;
+	}
+}
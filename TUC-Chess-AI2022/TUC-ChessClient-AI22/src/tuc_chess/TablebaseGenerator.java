@@ -0,0 +1,390 @@
+package tuc_chess;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/* builds the tablebase file by retrograde analysis: java tuc_chess.TablebaseGenerator [maxParts] [file]
+   a capture or a pawn leaving the board leads to a table of fewer chess parts, so the tables are built
+   in order of their number of chess parts, and the ones with the same number in parallel, one per thread
+   within a table:
+   - every position is played forward with the moves of World: a king capture wins in 1 ply,
+     a move to a smaller table gives its result right away, the moves that stay in the table are counted
+   - then the results spread backwards one ply at a time: a position with a move to a lost one wins
+     in one ply more, a position whose counted moves all lead to won ones loses in one ply more than the slowest
+   - what is left is a draw, and so are the positions without a move and the ones with only the kings
+   only quiet moves stay in a table, so going backwards is taking back a quiet move
+   memory: about three bytes per position of the tables being built, 2 * 35^(2+maxParts) each */
+public class TablebaseGenerator
+{
+	private static final int SQUARES = MoveTables.SQUARES;
+	private static final int MAX_DISTANCE = Byte.MAX_VALUE;		// a result is one byte
+
+	private final int maxParts;
+	private final byte[][] tables;		// by Tablebase.signature(), null until built
+
+	public static void main(String[] args) throws IOException, InterruptedException, ExecutionException
+	{
+		int maxParts = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+		String file = args.length > 1 ? args[1] : Tablebase.FILE;
+		int threads = Runtime.getRuntime().availableProcessors();
+
+		if(maxParts < 0 || maxParts > Tablebase.MAX_PARTS)
+			throw new IllegalArgumentException("maxParts must be from 0 to " + Tablebase.MAX_PARTS);
+
+		long start = System.currentTimeMillis();
+		TablebaseGenerator generator = new TablebaseGenerator(maxParts);
+		generator.generate(threads);
+		generator.write(file);
+		System.out.println("Wrote " + file + " in " + (System.currentTimeMillis() - start) / 1000 + " s with " + threads + " threads");
+	}
+
+	public TablebaseGenerator(int maxParts)
+	{
+		this.maxParts = maxParts;
+		this.tables = new byte[Tablebase.layout(maxParts).length - 1][];
+	}
+
+	public void generate(int threads) throws InterruptedException, ExecutionException
+	{
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try
+		{
+			for(int parts=0; parts<=maxParts; parts++)
+			{
+				ArrayList<Future<byte[]>> results = new ArrayList<>();
+				ArrayList<Integer> signatures = new ArrayList<>();
+
+				for(int s=0; s<tables.length; s++)
+				{
+					int[] counts = Tablebase.counts(maxParts, s);
+					if(Tablebase.exists(maxParts, counts) && counts[0] + counts[1] + counts[2] + counts[3] == parts)
+					{
+						results.add(pool.submit(new Table(counts, parts)));
+						signatures.add(s);
+					}
+				}
+				for(int k=0; k<results.size(); k++)
+					tables[signatures.get(k)] = results.get(k).get();
+			}
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+
+	public void write(String file) throws IOException
+	{
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16)))
+		{
+			out.writeInt(Tablebase.MAGIC);
+			out.writeInt(Tablebase.VERSION);
+			out.writeInt(maxParts);
+			for(byte[] table : tables)
+				if(table != null)
+					out.write(table);
+		}
+	}
+
+	// the results of the positions of one signature
+	private class Table implements Callable<byte[]>
+	{
+		private final int[] counts;
+		private final int parts;
+		private final byte[] results;
+		private final byte[] moves;			// counted moves not yet known to lead to a won position
+		private final byte[] slowest;		// the slowest win among the moves to smaller tables
+		private final IntList[] pending = new IntList[MAX_DISTANCE + 2];	// positions to decide at every distance
+
+		private final World world = new World();
+		private final MoveList list = new MoveList();
+
+		// the position decode() has read
+		private long white, black, pawns, rooks, kings;
+		private int color;
+
+		Table(int[] counts, int parts)
+		{
+			this.counts = counts;
+			this.parts = parts;
+			int size = Tablebase.size(parts);
+			this.results = new byte[size];
+			this.moves = parts > 0 ? new byte[size] : null;
+			this.slowest = parts > 0 ? new byte[size] : null;
+		}
+
+		@Override
+		public byte[] call()
+		{
+			// with only the kings the game is over, a draw
+			if(parts == 0)
+				return results;
+
+			for(int d=0; d<pending.length; d++)
+				pending[d] = new IntList();
+			for(int index=0; index<results.length; index++)
+				if(decode(index))
+					playForward(index);
+
+			IntList decided = new IntList();
+			for(int d=1; d<=MAX_DISTANCE; d++)
+			{
+				decided.clear();
+				IntList positions = pending[d];
+				for(int k=0; k<positions.size(); k++)
+				{
+					int index = positions.get(k);
+					if(results[index] == 0)
+					{
+						// a win is an odd number of plies, the opponent's king falls on a move of the player to move
+						results[index] = (byte) (d % 2 == 1 ? d : -d);
+						decided.add(index);
+					}
+				}
+				pending[d] = null;
+
+				for(int k=0; k<decided.size(); k++)
+					takeBack(decided.get(k), d);
+			}
+			if(!pending[MAX_DISTANCE + 1].isEmpty())
+				throw new IllegalStateException("a result of " + Arrays.toString(counts) + " is over " + MAX_DISTANCE + " plies");
+			return results;
+		}
+
+		// the results the moves of the position give right away and the count of the others
+		private void playForward(int index)
+		{
+			world.setPosition(white, black, pawns, rooks, kings, color);
+			world.generateMoves(list);
+			if(list.isEmpty())
+				return;
+
+			int fastest = Integer.MAX_VALUE;	// the fastest win among the moves to smaller tables
+			int count = 0;
+			boolean draw = false;
+			int worst = 0;
+
+			for(int k=0; k<list.size(); k++)
+			{
+				int move = list.get(k);
+				int captured = Move.captured(move);
+
+				if(captured == Move.KING)
+				{
+					fastest = 1;
+					break;
+				}
+				if(captured == Move.NONE && !Move.leavesBoard(move))
+				{
+					count++;
+					continue;
+				}
+
+				// the result of the opponent after the move, from a table of fewer chess parts
+				int result = resultAfter(move);
+				if(result < 0)
+					fastest = Math.min(fastest, 1 - result);
+				else if(result > 0)
+					worst = Math.max(worst, result);
+				else
+					draw = true;
+			}
+
+			if(fastest != Integer.MAX_VALUE)
+				pending[Math.min(fastest, MAX_DISTANCE + 1)].add(index);
+			else if(count == 0 && !draw)
+				pending[Math.min(worst + 1, MAX_DISTANCE + 1)].add(index);
+			// a position with a move to a draw or a win cannot be lost, its count never gets to 0
+			moves[index] = (byte) (draw || fastest != Integer.MAX_VALUE ? count + 1 : count);
+			slowest[index] = (byte) worst;
+		}
+
+		private int resultAfter(int move)
+		{
+			long fromBit = 1L << Move.from(move);
+			long toBit = 1L << Move.to(move);
+			long clear = ~(fromBit | toBit);
+			long w = white & clear;
+			long b = black & clear;
+			long p = pawns & clear;
+			long r = rooks & clear;
+			long k = kings & clear;
+
+			if(!Move.leavesBoard(move))
+			{
+				if(color == 0)
+					w |= toBit;
+				else
+					b |= toBit;
+				if(Move.piece(move) == Move.PAWN)
+					p |= toBit;
+				else if(Move.piece(move) == Move.ROOK)
+					r |= toBit;
+				else
+					k |= toBit;
+			}
+
+			int signature = Tablebase.signature(maxParts, Long.bitCount(w & p), Long.bitCount(w & r), Long.bitCount(b & p), Long.bitCount(b & r));
+			return tables[signature][Tablebase.index(w, b, p, r, k, 1 - color)];
+		}
+
+		// passes the result of a position decided at <d> plies to the positions a quiet move leads to it from
+		private void takeBack(int index, int d)
+		{
+			decode(index);
+
+			int mover = 1 - color;
+			long own = mover == 0 ? white : black;
+			long occupied = white | black;
+			boolean lost = results[index] < 0;
+
+			for(long parts = own; parts != 0; parts &= parts - 1)
+			{
+				int to = Long.numberOfTrailingZeros(parts);
+				long bit = 1L << to;
+
+				if((pawns & bit) != 0)
+				{
+					// the square behind the pawn, the one of a pawn of the other color ahead
+					int from = MoveTables.PAWN_PUSH[1 - mover][to];
+					if(from >= 0 && (occupied & (1L << from)) == 0)
+						passBack(from, to, mover, lost, d);
+				}
+				else if((rooks & bit) != 0)
+				{
+					for(int[] ray : MoveTables.ROOK_RAYS[to])
+					{
+						for(int from : ray)
+						{
+							if((occupied & (1L << from)) != 0)
+								break;
+							passBack(from, to, mover, lost, d);
+						}
+					}
+				}
+				else
+				{
+					for(int from : MoveTables.KING_STEPS[to])
+						if((occupied & (1L << from)) == 0)
+							passBack(from, to, mover, lost, d);
+				}
+			}
+		}
+
+		// the position before the mover's chess part went from <from> to <to>
+		private void passBack(int from, int to, int mover, boolean lost, int d)
+		{
+			long move = (1L << from) | (1L << to);
+			long w = mover == 0 ? white ^ move : white;
+			long b = mover == 1 ? black ^ move : black;
+			long p = (pawns & (1L << to)) != 0 ? pawns ^ move : pawns;
+			long r = (rooks & (1L << to)) != 0 ? rooks ^ move : rooks;
+			long k = (kings & (1L << to)) != 0 ? kings ^ move : kings;
+			int index = Tablebase.index(w, b, p, r, k, mover);
+
+			if(results[index] != 0)
+				return;
+			if(lost)
+				pending[d + 1].add(index);
+			else if(--moves[index] == 0)
+				pending[Math.min(Math.max(d, slowest[index]) + 1, MAX_DISTANCE + 1)].add(index);
+			else if(moves[index] < 0)
+				throw new IllegalStateException("the moves taken back do not match the moves of World");
+		}
+
+		// reads the position of an index, false for one that cannot occur
+		private boolean decode(int index)
+		{
+			white = black = pawns = rooks = kings = 0;
+			long occupied = 0;
+
+			// the digits from the last one: the groups backwards, the squares of a group descending
+			for(int g=Tablebase.GROUPS-1; g>=0; g--)
+			{
+				int previous = SQUARES;
+				boolean pawn = g % 2 == 0;
+				int side = g < 2 ? 0 : 1;
+
+				for(int n=0; n<counts[g]; n++)
+				{
+					int square = index % SQUARES;
+					long bit = 1L << square;
+					index /= SQUARES;
+
+					// the same position with the squares of a group in another order has its own index
+					if(square >= previous || (occupied & bit) != 0)
+						return false;
+					if(pawn && (MoveTables.LAST_ROW[side] & bit) != 0)
+						return false;
+					previous = square;
+					occupied |= bit;
+
+					if(side == 0)
+						white |= bit;
+					else
+						black |= bit;
+					if(pawn)
+						pawns |= bit;
+					else
+						rooks |= bit;
+				}
+			}
+
+			long blackKing = 1L << (index % SQUARES);
+			index /= SQUARES;
+			long whiteKing = 1L << (index % SQUARES);
+			index /= SQUARES;
+			if(((occupied | blackKing) & whiteKing) != 0 || (occupied & blackKing) != 0)
+				return false;
+
+			white |= whiteKing;
+			black |= blackKing;
+			kings = whiteKing | blackKing;
+			color = index;
+			return true;
+		}
+	}
+
+	// growable list of ints
+	private static class IntList
+	{
+		private int[] values = new int[16];
+		private int size = 0;
+
+		void add(int value)
+		{
+			if(size == values.length)
+				values = Arrays.copyOf(values, size * 2);
+			values[size++] = value;
+		}
+
+		int get(int index)
+		{
+			return values[index];
+		}
+
+		int size()
+		{
+			return size;
+		}
+
+		boolean isEmpty()
+		{
+			return size == 0;
+		}
+
+		void clear()
+		{
+			size = 0;
+		}
+	}
+}
@@ -1,40 +1,88 @@
 package tuc_chess;
 
+import minimax_montecarlo.EvalCache;
 import minimax_montecarlo.Minimax;
 import minimax_montecarlo.MonteCarloTreeSearch;
+import minimax_montecarlo.TranspositionTable;
 
-import java.util.ArrayList;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 
 public class World
 {
-	private String[][] board = null;
 	private int rows = 7;
 	private int columns = 5;
 	private int myColor = 0;
-	private ArrayList<String> availableMoves = null;
-	private int rookBlocks = 3;		// rook can move towards <rookBlocks> blocks in any vertical or horizontal direction
+	private MoveList availableMoves = null;
+	private MoveList legalityMoves = new MoveList();	// buffer of isLegal()
+
+	// the stages of generateStage(), a search that wants its cutoffs early generates them in this order
+	public static final int KING_CAPTURES = 0;	// moves capturing the opponent's king
+	public static final int CAPTURES = 1;		// moves capturing another chess part or grabbing a prize
+	public static final int QUIETS = 2;			// moves to empty squares
 	private int nTurns = 0;
 	private int nBranches = 0;
 	private int noPrize = 9;
 
+	/* undo records of the moves played with make(), one int each:
+	   the packed move (captured part and last row removal included), the points it scored
+	   and the player that was to move before it */
+	private static final int MAX_PLY = 256;
+	private static final int UNDO_MOVE = (1 << 19) - 1;		// the bits of the packed move
+	private int[] undoStack = new int[MAX_PLY];
+	private long[] hashStack = new long[MAX_PLY];
+	private int undoSize = 0;
+
+	/* bitboard representation of the position
+	   square (i,j) is bit i*columns+j, so the 35 squares of the board fit in a single long */
+	private long whiteBB = 0L;		// squares occupied by white chess parts
+	private long blackBB = 0L;		// squares occupied by black chess parts
+	private long pawnBB = 0L;		// squares occupied by pawns of either color
+	private long rookBB = 0L;		// squares occupied by rooks of either color
+	private long kingBB = 0L;		// squares occupied by kings of either color
+	private long prizeBB = 0L;		// squares holding a prize
+	private long hash = 0L;			// zobrist key of the chess parts, the prizes and the player to move
+
 	private int scoreWhite = 0;
 	private int scoreBlack = 0;
-	private boolean whiteKingIsUp = false;
-	private boolean blackKingIsUp = false;
+
+	/* kept up to date by movePart() and unmake(), so that terminalTest() and evaluate() need no board scan
+	   indexed by color (0 white, 1 black) */
+	private static final int NO_SQUARE = -1;
+	private static final int[] MATERIAL = {0, 1, 10, 0, 0};		// value of a chess part for evaluate(), by Move piece
+	private int[] material = new int[2];		// 10 per rook plus 1 per pawn
+	private int[] partCount = new int[2];		// chess parts besides the king
+	private int[] kingSquare = new int[2];		// NO_SQUARE once the king has been captured
 
 	private int maxDepth = 5;    //Max Depth of minimax tree
+	private int threads = 1;    // Search threads (Minimax lazy SMP, parallel MonteCarlo), 1 -> single threaded
+	private long moveTime = 0;  // Minimax time per move in millisecs with iterative deepening, 0 -> search to maxDepth
 	private boolean pruning = true;  // Alpha Beta pruning on/off
+	private boolean ordering = true;  // Minimax move ordering (hash move, captures, killers, history) on/off
+	private boolean quiescence = true;  // Minimax searches the captures at its leaves before evaluating, on/off
+	private boolean pvs = true;  // Minimax principal variation search and aspiration windows on/off, needs pruning
+	private boolean nullMove = true;  // Minimax null move pruning on/off, needs pruning
+	private boolean lmr = true;  // Minimax late move reductions on/off, needs pruning
+	private int hashSize = 16;  // Size of the minimax transposition table in MB, 0 -> no table
+	private TranspositionTable transpositionTable = null;  // kept between moves
+	private int evalCacheSize = 0;  // Size of the evaluation cache in MB, shared by Minimax and MonteCarlo, 0 -> no cache (evaluate() costs about as much as a probe)
+	private EvalCache evalCache = null;  // kept between moves
 	private int endTime = 3;  // How long to calculate in secs
 	private int iterations = 1000000; // change if you want to run monte carlo for exact number of iterations
 	private int option = 0;   // option=0 -> Minimax, option=1 -> MonteCarlo, option=? -> Random move
+	private int mctsParallelism = MonteCarloTreeSearch.TREE_PARALLEL;  // TREE_, ROOT_ or LEAF_PARALLEL, how MonteCarlo uses more than one thread
+	private int treeSize = 32;  // Size of the MonteCarlo search tree in MB
+	private MonteCarloTreeSearch monteCarlo = null;  // kept between moves, so its tree is allocated once
+	private boolean ponder = true;  // search the position after the expected reply while the opponent thinks, Minimax needs its transposition table (hashSize > 0)
+	private Thread ponderThread = null;
+	private AtomicBoolean ponderStop = null;
 
 
 	public World()
 	{
-		board = new String[rows][columns];
-		
+		String[][] board = new String[rows][columns];
+
 		/* represent the board
 		
 		BP|BR|BK|BR|BP
@@ -86,22 +134,161 @@ public class World
 		// setting the prizes
 		for(int j=0; j<columns; j++)
 			board[rows/2][j] = "P";
-		
-		availableMoves = new ArrayList<String>();
+
+		setBoard(board);
+
+		availableMoves = new MoveList();
 	}
 	
 	public void setMyColor(int myColor)
 	{
+		if(this.myColor != myColor)
+			hash ^= Zobrist.BLACK_TO_MOVE;
 		this.myColor = myColor;
 	}
 
 
+	// builds a String view of the bitboards, changes on it take effect only through setBoard
 	public String[][] getBoard() {
+		String[][] board = new String[rows][columns];
+
+		for(int i=0; i<rows; i++)
+		{
+			for(int j=0; j<columns; j++)
+			{
+				long bit = 1L << (i*columns + j);
+
+				if((prizeBB & bit) != 0)
+					board[i][j] = "P";
+				else if(((whiteBB | blackBB) & bit) == 0)
+					board[i][j] = " ";
+				else
+				{
+					String color = (whiteBB & bit) != 0 ? "W" : "B";
+
+					if((pawnBB & bit) != 0)
+						board[i][j] = color + "P";
+					else if((rookBB & bit) != 0)
+						board[i][j] = color + "R";
+					else
+						board[i][j] = color + "K";
+				}
+			}
+		}
 		return board;
 	}
 
 	public void setBoard(String[][] board) {
-		this.board = board;
+		whiteBB = 0L;
+		blackBB = 0L;
+		pawnBB = 0L;
+		rookBB = 0L;
+		kingBB = 0L;
+		prizeBB = 0L;
+
+		for(int i=0; i<rows; i++)
+		{
+			for(int j=0; j<columns; j++)
+			{
+				long bit = 1L << (i*columns + j);
+				char first = board[i][j].charAt(0);
+
+				if(first == 'P')
+				{
+					prizeBB |= bit;
+					continue;
+				}
+				if(first == 'W')
+					whiteBB |= bit;
+				else if(first == 'B')
+					blackBB |= bit;
+				else
+					continue;
+
+				char second = board[i][j].charAt(1);
+
+				if(second == 'P')
+					pawnBB |= bit;
+				else if(second == 'R')
+					rookBB |= bit;
+				else
+					kingBB |= bit;
+			}
+		}
+		hash = computeHash();
+		countParts();
+	}
+
+	private void countParts()
+	{
+		for(int color=0; color<2; color++)
+		{
+			long own = color == 0 ? whiteBB : blackBB;
+
+			material[color] = MATERIAL[Move.ROOK] * Long.bitCount(own & rookBB) + MATERIAL[Move.PAWN] * Long.bitCount(own & pawnBB);
+			partCount[color] = Long.bitCount(own & ~kingBB);
+			kingSquare[color] = (own & kingBB) != 0 ? Long.numberOfTrailingZeros(own & kingBB) : NO_SQUARE;
+		}
+	}
+
+	private long computeHash()
+	{
+		long key = myColor == 1 ? Zobrist.BLACK_TO_MOVE : 0L;
+
+		for(int square=0; square<rows*columns; square++)
+		{
+			long bit = 1L << square;
+
+			if((prizeBB & bit) != 0)
+				key ^= Zobrist.prize(square);
+			else if(((whiteBB | blackBB) & bit) != 0)
+				key ^= Zobrist.part((whiteBB & bit) != 0 ? 0 : 1, pieceAt(square), square);
+		}
+		return key;
+	}
+
+	// identifies the position: chess parts, prizes, player to move and score difference
+	public long getHashKey()
+	{
+		return hash ^ Zobrist.scoreDiff(scoreWhite, scoreBlack);
+	}
+
+	// copies the position, the scores and the player to move of another world
+	public void copyFrom(World w) {
+		this.whiteBB = w.whiteBB;
+		this.blackBB = w.blackBB;
+		this.pawnBB = w.pawnBB;
+		this.rookBB = w.rookBB;
+		this.kingBB = w.kingBB;
+		this.prizeBB = w.prizeBB;
+		this.scoreWhite = w.scoreWhite;
+		this.scoreBlack = w.scoreBlack;
+		this.myColor = w.myColor;
+		this.hash = w.hash;
+		this.undoSize = 0;
+		for(int color=0; color<2; color++)
+		{
+			this.material[color] = w.material[color];
+			this.partCount[color] = w.partCount[color];
+			this.kingSquare[color] = w.kingSquare[color];
+		}
+	}
+
+	// sets up a position without prizes and points, for TablebaseGenerator
+	void setPosition(long white, long black, long pawns, long rooks, long kings, int color)
+	{
+		whiteBB = white;
+		blackBB = black;
+		pawnBB = pawns;
+		rookBB = rooks;
+		kingBB = kings;
+		prizeBB = 0L;
+		scoreWhite = 0;
+		scoreBlack = 0;
+		myColor = color;
+		hash = computeHash();
+		undoSize = 0;
+		countParts();
 	}
 
 	public int getScoreWhite() {
@@ -124,13 +311,9 @@ public class World
 		return myColor;
 	}
 
-	public ArrayList<String> getAvailableMoves(){
-		availableMoves = new ArrayList<String>();
-
-		if(myColor == 0)		// I am the white player
-			this.whiteMoves();
-		else					// I am the black player
-			this.blackMoves();
+	// the returned list is reused by the next call on this world
+	public MoveList getAvailableMoves(){
+		generateMoves(availableMoves);
 
 		// keeping track of the branch factor
 		nTurns++;
@@ -138,447 +321,305 @@ public class World
 		return availableMoves;
 	}
 
-	public String selectAction()
+	// fills the given buffer with the moves of the player to move, without keeping track of the branch factor
+	public void generateMoves(MoveList moves)
 	{
+		moves.clear();
+
+		if(myColor == 0)		// I am the white player
+			this.whiteMoves(moves);
+		else					// I am the black player
+			this.blackMoves(moves);
+	}
+
+	// fills the buffer with the moves of one stage only, together the three stages give all the moves
+	public void generateStage(MoveList moves, int stage)
+	{
+		long opponent = myColor == 0 ? blackBB : whiteBB;
+		long targets;
+
+		if(stage == KING_CAPTURES)
+			targets = opponent & kingBB;
+		else if(stage == CAPTURES)
+			targets = (opponent & ~kingBB) | prizeBB;
+		else
+			targets = ~(whiteBB | blackBB | prizeBB);
+
+		moves.clear();
+		generateTargets(moves, targets);
+	}
+
+	// fills the buffer with the captures (the king's included) and the prize grabs, for tactical searches
+	public void generateCaptures(MoveList moves)
+	{
+		moves.clear();
+		generateTargets(moves, (myColor == 0 ? blackBB : whiteBB) | prizeBB);
+	}
+
+	private void generateTargets(MoveList moves, long targets)
+	{
+		if(myColor == 0)
+			generateMoves(moves, whiteBB, blackBB, 0, targets);
+		else
+			generateMoves(moves, blackBB, whiteBB, 1, targets);
+	}
+
+	public int selectAction()
+	{
+		return selectAction(moveTime);
+	}
+
+	// timeBudget: millisecs minimax may deepen its search for, 0 -> fixed maxDepth search
+	public int selectAction(long timeBudget)
+	{
+		if (evalCache == null && evalCacheSize > 0)
+			evalCache = new EvalCache(evalCacheSize);
+
+		this.getAvailableMoves(); // keeping track of the branch factor, also for the moves of the tablebase
+
 		if(option == 0) {       // Minimax
-			this.getAvailableMoves(); // keeping track of the branch factor
-			Minimax minimax = new Minimax(myColor, maxDepth, pruning);
+			if (tablebaseWins())
+				return tablebaseMove();
+			if (transpositionTable == null && hashSize > 0)
+				transpositionTable = new TranspositionTable(hashSize);
+			Minimax minimax = newMinimax();
+			if (timeBudget > 0)
+				return minimax.iterativeDeepening(this, timeBudget);
 			return minimax.alphaBeta(this);
 		}
 		else if (option == 1) { // Monte Carlo Tree Search
-			this.getAvailableMoves(); // keeping track of the branch factor
-			MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(myColor, endTime, iterations);
-			return mcts.findNextMove(this);
+			if (tablebaseWins())
+				return tablebaseMove();
+			if (monteCarlo == null)
+				monteCarlo = new MonteCarloTreeSearch(myColor, endTime, iterations, treeSize);
+			monteCarlo.setParallelism(mctsParallelism, threads);
+			monteCarlo.setEvalCache(evalCache);
+			return monteCarlo.findNextMove(this);
 		}
 		else            // Random move
 			return this.selectRandomAction();
 	}
-	
-	public void whiteMoves()
+
+	// a won endgame of the tablebase is played without a search, unless capturing the king leaves us behind
+	private boolean tablebaseWins()
 	{
-		String firstLetter = "";
-		String secondLetter = "";
-		String move = "";
-				
-		for(int i=0; i<rows; i++)
+		int result = probeTablebase();
+		return result > 0 && evaluateEndgame(myColor, result) > evaluateEndgame(myColor, 0);
+	}
+
+	// a Minimax search with the settings of this world, the same for selectAction and startPondering
+	private Minimax newMinimax()
+	{
+		Minimax minimax = new Minimax(myColor, maxDepth, pruning, transpositionTable);
+		minimax.setMoveOrdering(ordering);
+		minimax.setQuiescence(quiescence);
+		minimax.setPrincipalVariationSearch(pvs);
+		minimax.setNullMovePruning(nullMove);
+		minimax.setLateMoveReductions(lmr);
+		minimax.setEvalCache(evalCache);
+		minimax.setThreads(threads);
+		return minimax;
+	}
+
+	// to be called after our move has been played: guesses the opponent's reply and searches the position after it
+	// on a background thread until stopPondering(), the next selectAction finds that work if the guess was right
+	// Minimax guesses and keeps its work in the transposition table, without one it does not ponder
+	public void startPondering()
+	{
+		if (!ponder || ponderThread != null)
+			return;
+
+		World position = new World();
+		position.copyFrom(this);
+		position.setMyColor(1 - myColor);
+
+		Minimax minimax = null;
+		int reply;
+		if (option == 0 && transpositionTable != null) {
+			minimax = newMinimax();
+			reply = minimax.expectedReply(position);
+		}
+		else if (option == 1 && monteCarlo != null)
+			reply = monteCarlo.expectedReply();
+		else
+			return;
+		if (reply == Move.NONE)
+			return;
+
+		position.performMove(reply);
+		position.setMyColor(myColor);
+
+		Minimax ponderer = minimax;
+		AtomicBoolean stop = new AtomicBoolean(false);
+		ponderThread = new Thread(() -> {
+			if (ponderer != null)
+				ponderer.ponder(position, moveTime, stop);
+			else
+				monteCarlo.ponder(position, stop);
+		}, "ponder");
+		ponderThread.setDaemon(true);
+		ponderStop = stop;
+		ponderThread.start();
+	}
+
+	// to be called before the world changes, waits for the pondering search to unwind
+	public void stopPondering()
+	{
+		if (ponderThread == null)
+			return;
+
+		ponderStop.set(true);
+		try
 		{
-			for(int j=0; j<columns; j++)
-			{
-				firstLetter = Character.toString(board[i][j].charAt(0));
-				
-				// if it there is not a white chess part in this position then keep on searching
-				if(firstLetter.equals("B") || firstLetter.equals(" ") || firstLetter.equals("P"))
-					continue;
-				
-				// check the kind of the white chess part
-				secondLetter = Character.toString(board[i][j].charAt(1));
-				
-				if(secondLetter.equals("P"))	// it is a pawn
-				{
-					
-					// check if it can move one vertical position ahead
-					firstLetter = Character.toString(board[i-1][j].charAt(0));
-					
-					if(firstLetter.equals(" ") || firstLetter.equals("P"))
-					{
-						move = Integer.toString(i) + Integer.toString(j) + 
-							   Integer.toString(i-1) + Integer.toString(j);
-						
-						availableMoves.add(move);
-					}
-					
-					// check if it can move crosswise to the left
-					if(j!=0 && i!=0)
-					{
-						firstLetter = Character.toString(board[i-1][j-1].charAt(0));						
-						if(!(firstLetter.equals("W") || firstLetter.equals(" ") || firstLetter.equals("P"))) {
-							move = Integer.toString(i) + Integer.toString(j) + 
-									   Integer.toString(i-1) + Integer.toString(j-1);
-								
-							availableMoves.add(move);
-						}											
-					}
-					
-					// check if it can move crosswise to the right
-					if(j!=columns-1 && i!=0)
-					{
-						firstLetter = Character.toString(board[i-1][j+1].charAt(0));
-						if(!(firstLetter.equals("W") || firstLetter.equals(" ") || firstLetter.equals("P"))) {
-							
-							move = Integer.toString(i) + Integer.toString(j) + 
-									   Integer.toString(i-1) + Integer.toString(j+1);							
-							availableMoves.add(move);
-						}
-					}
-				}
-				else if(secondLetter.equals("R"))	// it is a rook
-				{
-					// check if it can move upwards
-					for(int k=0; k<rookBlocks; k++)
-					{
-						if((i-(k+1)) < 0)
-							break;
-						
-						firstLetter = Character.toString(board[i-(k+1)][j].charAt(0));
-						
-						if(firstLetter.equals("W"))
-							break;
-						
-						move = Integer.toString(i) + Integer.toString(j) + 
-							   Integer.toString(i-(k+1)) + Integer.toString(j);
-						
-						availableMoves.add(move);
-						
-						// prevent detouring a chesspart to attack the other
-						if(firstLetter.equals("B") || firstLetter.equals("P"))
-							break;
-					}
-					
-					// check if it can move downwards
-					for(int k=0; k<rookBlocks; k++)
-					{
-						if((i+(k+1)) == rows)
-							break;
-						
-						firstLetter = Character.toString(board[i+(k+1)][j].charAt(0));
-						
-						if(firstLetter.equals("W"))
-							break;
-						
-						move = Integer.toString(i) + Integer.toString(j) + 
-							   Integer.toString(i+(k+1)) + Integer.toString(j);
-						
-						availableMoves.add(move);
-						
-						// prevent detouring a chesspart to attack the other
-						if(firstLetter.equals("B") || firstLetter.equals("P"))
-							break;
-					}
-					
-					// check if it can move on the left
-					for(int k=0; k<rookBlocks; k++)
-					{
-						if((j-(k+1)) < 0)
-							break;
-						
-						firstLetter = Character.toString(board[i][j-(k+1)].charAt(0));
-						
-						if(firstLetter.equals("W"))
-							break;
-						
-						move = Integer.toString(i) + Integer.toString(j) + 
-							   Integer.toString(i) + Integer.toString(j-(k+1));
-						
-						availableMoves.add(move);
-						
-						// prevent detouring a chesspart to attack the other
-						if(firstLetter.equals("B") || firstLetter.equals("P"))
-							break;
-					}
-					
-					// check of it can move on the right
-					for(int k=0; k<rookBlocks; k++)
-					{
-						if((j+(k+1)) == columns)
-							break;
-						
-						firstLetter = Character.toString(board[i][j+(k+1)].charAt(0));
-						
-						if(firstLetter.equals("W"))
-							break;
-						
-						move = Integer.toString(i) + Integer.toString(j) + 
-							   Integer.toString(i) + Integer.toString(j+(k+1));
-						
-						availableMoves.add(move);
-						
-						// prevent detouring a chesspart to attack the other
-						if(firstLetter.equals("B") || firstLetter.equals("P"))
-							break;
-					}
-				}
-				else // it is the king
-				{
-					// check if it can move upwards
-					if((i-1) >= 0)
-					{
-						firstLetter = Character.toString(board[i-1][j].charAt(0));
-						
-						if(!firstLetter.equals("W"))
-						{
-							move = Integer.toString(i) + Integer.toString(j) + 
-								   Integer.toString(i-1) + Integer.toString(j);
-								
-							availableMoves.add(move);	
-						}
-					}
-					
-					// check if it can move downwards
-					if((i+1) < rows)
-					{
-						firstLetter = Character.toString(board[i+1][j].charAt(0));
-						
-						if(!firstLetter.equals("W"))
-						{
-							move = Integer.toString(i) + Integer.toString(j) + 
-								   Integer.toString(i+1) + Integer.toString(j);
-								
-							availableMoves.add(move);	
-						}
-					}
-					
-					// check if it can move on the left
-					if((j-1) >= 0)
-					{
-						firstLetter = Character.toString(board[i][j-1].charAt(0));
-						
-						if(!firstLetter.equals("W"))
-						{
-							move = Integer.toString(i) + Integer.toString(j) + 
-								   Integer.toString(i) + Integer.toString(j-1);
-								
-							availableMoves.add(move);	
-						}
-					}
-					
-					// check if it can move on the right
-					if((j+1) < columns)
-					{
-						firstLetter = Character.toString(board[i][j+1].charAt(0));
-						
-						if(!firstLetter.equals("W"))
-						{
-							move = Integer.toString(i) + Integer.toString(j) + 
-								   Integer.toString(i) + Integer.toString(j+1);
-								
-							availableMoves.add(move);	
-						}
-					}
-				}			
-			}	
+			ponderThread.join();
 		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		ponderThread = null;
+		ponderStop = null;
 	}
-	
-	public void blackMoves()
+
+	public void whiteMoves(MoveList moves)
 	{
-		String firstLetter = "";
-		String secondLetter = "";
-		String move = "";
-				
-		for(int i=0; i<rows; i++)
+		generateMoves(moves, whiteBB, blackBB, 0, ~0L);
+	}
+
+	public void blackMoves(MoveList moves)
+	{
+		generateMoves(moves, blackBB, whiteBB, 1, ~0L);
+	}
+
+	/* scans the squares of the player's chess parts in board order and adds their moves
+	   to the target squares using the precomputed patterns of MoveTables */
+	private void generateMoves(MoveList moves, long own, long opponent, int side, long targets)
+	{
+		long pieces = own;
+
+		while(pieces != 0)
 		{
-			for(int j=0; j<columns; j++)
+			int from = Long.numberOfTrailingZeros(pieces);
+			pieces &= pieces - 1;
+
+			generatePartMoves(moves, from, own, opponent, side, targets);
+		}
+	}
+
+	// adds the moves of the player's chess part standing on the square that end on one of the targets
+	private void generatePartMoves(MoveList moves, int from, long own, long opponent, int side, long targets)
+	{
+		long bit = 1L << from;
+		long occupied = own | opponent;
+		int color = side == 0 ? 0 : Move.BLACK;
+
+		if((pawnBB & bit) != 0)	// it is a pawn
+		{
+			// a pawn never stands on its last row, it leaves the board when it gets there
+			int ahead = MoveTables.PAWN_PUSH[side][from];
+			int flags = (MoveTables.LAST_ROW[side] & (1L << ahead)) != 0 ? color | Move.LEAVES : color;
+
+			// check if it can move one vertical position ahead (empty square or prize)
+			if((occupied & (1L << ahead)) == 0 && (targets & (1L << ahead)) != 0)
+				addMove(moves, from, ahead, Move.PAWN, flags);
+
+			// check if it can move crosswise to the left or to the right
+			for(int to : MoveTables.PAWN_CAPTURES[side][from])
+				if((opponent & targets & (1L << to)) != 0)
+					addMove(moves, from, to, Move.PAWN, flags);
+		}
+		else if((rookBB & bit) != 0)	// it is a rook
+		{
+			long blockers = occupied | prizeBB;
+
+			// upwards, downwards, on the left, on the right
+			for(int[] ray : MoveTables.ROOK_RAYS[from])
 			{
-				firstLetter = Character.toString(board[i][j].charAt(0));
-				
-				// if it there is not a black chess part in this position then keep on searching
-				if(firstLetter.equals("W") || firstLetter.equals(" ") || firstLetter.equals("P"))
-					continue;
-				
-				// check the kind of the white chess part
-				secondLetter = Character.toString(board[i][j].charAt(1));
-				
-				if(secondLetter.equals("P"))	// it is a pawn
+				for(int to : ray)
 				{
-					
-					// check if it can move one vertical position ahead
-					firstLetter = Character.toString(board[i+1][j].charAt(0));
-					
-					if(firstLetter.equals(" ") || firstLetter.equals("P"))
-					{
-						move = Integer.toString(i) + Integer.toString(j) + 
-							   Integer.toString(i+1) + Integer.toString(j);
-						
-						availableMoves.add(move);
-					}
-					
-					// check if it can move crosswise to the left
-					if(j!=0 && i!=rows-1)
-					{
-						firstLetter = Character.toString(board[i+1][j-1].charAt(0));
-						
-						if(!(firstLetter.equals("B") || firstLetter.equals(" ") || firstLetter.equals("P"))) {
-							move = Integer.toString(i) + Integer.toString(j) + 
-									   Integer.toString(i+1) + Integer.toString(j-1);
-								
-							availableMoves.add(move);
-						}																	
-					}
-					
-					// check if it can move crosswise to the right
-					if(j!=columns-1 && i!=rows-1)
-					{
-						firstLetter = Character.toString(board[i+1][j+1].charAt(0));
-						
-						if(!(firstLetter.equals("B") || firstLetter.equals(" ") || firstLetter.equals("P"))) {
-							move = Integer.toString(i) + Integer.toString(j) + 
-									   Integer.toString(i+1) + Integer.toString(j+1);
-								
-							availableMoves.add(move);
-						}
-							
-						
-						
-					}
-				}
-				else if(secondLetter.equals("R"))	// it is a rook
-				{
-					// check if it can move upwards
-					for(int k=0; k<rookBlocks; k++)
-					{
-						if((i-(k+1)) < 0)
-							break;
-						
-						firstLetter = Character.toString(board[i-(k+1)][j].charAt(0));
-						
-						if(firstLetter.equals("B"))
-							break;
-						
-						move = Integer.toString(i) + Integer.toString(j) + 
-							   Integer.toString(i-(k+1)) + Integer.toString(j);
-						
-						availableMoves.add(move);
-						
-						// prevent detouring a chesspart to attack the other
-						if(firstLetter.equals("W") || firstLetter.equals("P"))
-							break;
-					}
-					
-					// check if it can move downwards
-					for(int k=0; k<rookBlocks; k++)
-					{
-						if((i+(k+1)) == rows)
-							break;
-						
-						firstLetter = Character.toString(board[i+(k+1)][j].charAt(0));
-						
-						if(firstLetter.equals("B"))
-							break;
-						
-						move = Integer.toString(i) + Integer.toString(j) + 
-							   Integer.toString(i+(k+1)) + Integer.toString(j);
-						
-						availableMoves.add(move);
-						
-						// prevent detouring a chesspart to attack the other
-						if(firstLetter.equals("W") || firstLetter.equals("P"))
-							break;
-					}
-					
-					// check if it can move on the left
-					for(int k=0; k<rookBlocks; k++)
-					{
-						if((j-(k+1)) < 0)
-							break;
-						
-						firstLetter = Character.toString(board[i][j-(k+1)].charAt(0));
-						
-						if(firstLetter.equals("B"))
-							break;
-						
-						move = Integer.toString(i) + Integer.toString(j) + 
-							   Integer.toString(i) + Integer.toString(j-(k+1));
-						
-						availableMoves.add(move);
-						
-						// prevent detouring a chesspart to attack the other
-						if(firstLetter.equals("W") || firstLetter.equals("P"))
-							break;
-					}
-					
-					// check of it can move on the right
-					for(int k=0; k<rookBlocks; k++)
-					{
-						if((j+(k+1)) == columns)
-							break;
-						
-						firstLetter = Character.toString(board[i][j+(k+1)].charAt(0));
-						
-						if(firstLetter.equals("B"))
-							break;
-						
-						move = Integer.toString(i) + Integer.toString(j) + 
-							   Integer.toString(i) + Integer.toString(j+(k+1));
-						
-						availableMoves.add(move);
-						
-						// prevent detouring a chesspart to attack the other
-						if(firstLetter.equals("W") || firstLetter.equals("P"))
-							break;
-					}
+					long toBit = 1L << to;
+
+					if((own & toBit) != 0)
+						break;
+
+					if((targets & toBit) != 0)
+						addMove(moves, from, to, Move.ROOK, color);
+
+					// prevent detouring a chesspart to attack the other
+					if((blockers & toBit) != 0)
+						break;
 				}
-				else // it is the king
-				{
-					// check if it can move upwards
-					if((i-1) >= 0)
-					{
-						firstLetter = Character.toString(board[i-1][j].charAt(0));
-						
-						if(!firstLetter.equals("B"))
-						{
-							move = Integer.toString(i) + Integer.toString(j) + 
-								   Integer.toString(i-1) + Integer.toString(j);
-								
-							availableMoves.add(move);	
-						}
-					}
-					
-					// check if it can move downwards
-					if((i+1) < rows)
-					{
-						firstLetter = Character.toString(board[i+1][j].charAt(0));
-						
-						if(!firstLetter.equals("B"))
-						{
-							move = Integer.toString(i) + Integer.toString(j) + 
-								   Integer.toString(i+1) + Integer.toString(j);
-								
-							availableMoves.add(move);	
-						}
-					}
-					
-					// check if it can move on the left
-					if((j-1) >= 0)
-					{
-						firstLetter = Character.toString(board[i][j-1].charAt(0));
-						
-						if(!firstLetter.equals("B"))
-						{
-							move = Integer.toString(i) + Integer.toString(j) + 
-								   Integer.toString(i) + Integer.toString(j-1);
-								
-							availableMoves.add(move);	
-						}
-					}
-					
-					// check if it can move on the right
-					if((j+1) < columns)
-					{
-						firstLetter = Character.toString(board[i][j+1].charAt(0));
-						
-						if(!firstLetter.equals("B"))
-						{
-							move = Integer.toString(i) + Integer.toString(j) + 
-								   Integer.toString(i) + Integer.toString(j+1);
-								
-							availableMoves.add(move);	
-						}
-					}
-				}			
-			}	
+			}
+		}
+		else	// it is the king
+		{
+			for(int to : MoveTables.KING_STEPS[from])
+				if((own & (1L << to)) == 0 && (targets & (1L << to)) != 0)
+					addMove(moves, from, to, Move.KING, color);
 		}
 	}
-	
-	private String selectRandomAction()
+
+	// whether the player to move can play the move in this position, for moves that come from
+	// another position, e.g. a transposition table, it generates only the moves of the moving chess part
+	public boolean isLegal(int move)
+	{
+		long own = myColor == 0 ? whiteBB : blackBB;
+		long opponent = myColor == 0 ? blackBB : whiteBB;
+		int from = Move.from(move);
+
+		if(move == Move.NONE || (own & (1L << from)) == 0)
+			return false;
+
+		legalityMoves.clear();
+		generatePartMoves(legalityMoves, from, own, opponent, myColor, ~0L);
+		for(int i = 0; i < legalityMoves.size(); i++)
+			if(legalityMoves.get(i) == move)
+				return true;
+		return false;
+	}
+
+	private void addMove(MoveList moves, int from, int to, int piece, int flags)
+	{
+		moves.add(Move.encode(from, to, piece, pieceAt(to), flags));
+	}
+
+	// the kind of chess part (or prize) standing on a square, Move.NONE if it is empty
+	public int pieceAt(int square)
 	{
-		this.getAvailableMoves();
+		long bit = 1L << square;
+
+		if((prizeBB & bit) != 0)
+			return Move.PRIZE;
+		if((pawnBB & bit) != 0)
+			return Move.PAWN;
+		if((rookBB & bit) != 0)
+			return Move.ROOK;
+		if((kingBB & bit) != 0)
+			return Move.KING;
+		return Move.NONE;
+	}
 
+	// a move of the list selectAction has filled
+	private int selectRandomAction()
+	{
 		Random ran = new Random();
 		int x = ran.nextInt(availableMoves.size());
 		
 		return availableMoves.get(x);
 	}
 	
+	// whether a search has used an evaluation cache, see evalCacheSize
+	public boolean hasEvalCache()
+	{
+		return evalCache != null;
+	}
+
+	// the share of the evaluations the cache has answered, 0 without a cache
+	public double getEvalCacheHitRate()
+	{
+		return evalCache != null ? evalCache.hitRate() : 0;
+	}
+
 	public double getAvgBFactor()
 	{
 		return nBranches / (double) nTurns;
@@ -589,128 +630,220 @@ public class World
 		scoreWhite = scWhite;
 		scoreBlack = scBlack;
 
-		String chesspart = Character.toString(board[x1][y1].charAt(1));
-		
-		boolean pawnLastRow = false;
-		
-		// check if it is a move that has made a move to the last line
-		if(chesspart.equals("P"))
-			if( (x1==rows-2 && x2==rows-1) || (x1==1 && x2==0) )
-			{
-				board[x2][y2] = " ";	// in a case an opponent's chess part has just been captured
-				board[x1][y1] = " ";
-				pawnLastRow = true;
-			}
-		
-		// otherwise
-		if(!pawnLastRow)
-		{
-			board[x2][y2] = board[x1][y1];
-			board[x1][y1] = " ";
-		}
-		
+		movePart(x1*columns + y1, x2*columns + y2);
+
 		// check if a prize has been added in the game
 		if(prizeX != noPrize)
-			board[prizeX][prizeY] = "P";
+		{
+			int square = prizeX*columns + prizeY;
+
+			if((prizeBB & (1L << square)) == 0)
+				hash ^= Zobrist.prize(square);
+			prizeBB |= 1L << square;
+		}
 	}
 
 
-	public void performMove(String move)
+	public void performMove(int move)
 	{
-		int x1 = Integer.parseInt(Character.toString(move.charAt(0)));
-		int y1 = Integer.parseInt(Character.toString(move.charAt(1)));
-		int x2 = Integer.parseInt(Character.toString(move.charAt(2)));
-		int y2 = Integer.parseInt(Character.toString(move.charAt(3)));
-		
-		String player = Character.toString(board[x1][y1].charAt(0));
-		String chesspart = Character.toString(board[x1][y1].charAt(1));
-		String target;
-
-		if (Character.toString(board[x2][y2].charAt(0)).equals(" "))
-			target = " ";
-		else if (Character.toString(board[x2][y2].charAt(0)).equals("P"))
-			target = "P";
+		int points = capturePoints(Move.captured(move));
+
+		if (Move.isBlack(move))
+			scoreBlack += points;
 		else
-			target = Character.toString(board[x2][y2].charAt(1));
+			scoreWhite += points;
 
-		if (player.equals("W")){
-			switch (target) {
-				case "P": // Pawn or Present
-					scoreWhite += 1;
-					break;
-				case "R": // Rook
-					scoreWhite += 3;
-					break;
-				case "K": // King
-					scoreWhite += 8;
-					break;
-			}
+		movePart(Move.from(move), Move.to(move));
+	}
+
+	// plays a move in place and passes the turn to the opponent, it can be taken back with unmake()
+	public void make(int move)
+	{
+		int points = capturePoints(Move.captured(move));
+
+		hashStack[undoSize] = hash;
+		undoStack[undoSize++] = move | (points << 19) | (myColor << 23);
+
+		if (Move.isBlack(move))
+			scoreBlack += points;
+		else
+			scoreWhite += points;
+
+		movePart(Move.from(move), Move.to(move));
+		myColor = 1 - myColor;
+		hash ^= Zobrist.BLACK_TO_MOVE;
+	}
+
+	// passes the turn to the opponent without moving (null move pruning), it is taken back with unmake() too
+	public void makeNullMove()
+	{
+		hashStack[undoSize] = hash;
+		undoStack[undoSize++] = Move.NONE | (myColor << 23);
+
+		myColor = 1 - myColor;
+		hash ^= Zobrist.BLACK_TO_MOVE;
+	}
+
+	// whether the last move played with make() or makeNullMove() is a null move
+	public boolean isNullMovePlayed()
+	{
+		return undoSize > 0 && (undoStack[undoSize - 1] & UNDO_MOVE) == Move.NONE;
+	}
+
+	// zugzwang guard of the null move: with only king and pawns left, passing may be the best move
+	public boolean hasRooks(int player)
+	{
+		return ((player == 0 ? whiteBB : blackBB) & rookBB) != 0;
+	}
+
+	// takes back the last move played with make()
+	public void unmake()
+	{
+		int record = undoStack[--undoSize];
+		int points = (record >>> 19) & 0xF;
+		int from = Move.from(record);
+		int to = Move.to(record);
+		long fromBit = 1L << from;
+		long toBit = 1L << to;
+		boolean black = Move.isBlack(record);
+		int color = black ? 1 : 0;
+		int piece = Move.piece(record);
+
+		myColor = record >>> 23;
+		hash = hashStack[undoSize];
+
+		if ((record & UNDO_MOVE) == Move.NONE)	// a null move
+			return;
+
+		if (black)
+			scoreBlack -= points;
+		else
+			scoreWhite -= points;
+
+		// take the chess part back from the target square, unless it has left the board
+		if (!Move.leavesBoard(record))
+		{
+			whiteBB &= ~toBit;
+			blackBB &= ~toBit;
+			pawnBB &= ~toBit;
+			rookBB &= ~toBit;
+			kingBB &= ~toBit;
 		}
-		else {
-			switch (target) {
-				case "P": // Pawn or Present
-					scoreBlack += 1;
-					break;
-				case "R": // Rook
-					scoreBlack += 3;
-					break;
-				case "K": // King
-					scoreBlack += 8;
-					break;
-			}
+		else
+		{
+			material[color] += MATERIAL[piece];
+			partCount[color]++;
 		}
 
-		boolean pawnLastRow = false;
+		if (black)
+			blackBB |= fromBit;
+		else
+			whiteBB |= fromBit;
+		addPart(piece, fromBit);
+		if (piece == Move.KING)
+			kingSquare[color] = from;
+
+		// put back whatever was captured
+		int captured = Move.captured(record);
+		if (captured == Move.PRIZE)
+			prizeBB |= toBit;
+		else if (captured != Move.NONE)
+		{
+			if (black)
+				whiteBB |= toBit;
+			else
+				blackBB |= toBit;
+			addPart(captured, toBit);
+			material[1-color] += MATERIAL[captured];
+			if (captured == Move.KING)
+				kingSquare[1-color] = to;
+			else
+				partCount[1-color]++;
+		}
+	}
 
-		// check if it is a move that has made a move to the last line
-		if(chesspart.equals("P"))
-			if( (x1==rows-2 && x2==rows-1) || (x1==1 && x2==0) )
-			{
-				board[x2][y2] = " ";	// in a case an opponent's chess part has just been captured
-				board[x1][y1] = " ";
-				pawnLastRow = true;
-			}
+	private void addPart(int piece, long bit)
+	{
+		if (piece == Move.PAWN)
+			pawnBB |= bit;
+		else if (piece == Move.ROOK)
+			rookBB |= bit;
+		else
+			kingBB |= bit;
+	}
+
+	// the points a player earns by moving on a square that holds <captured>
+	private static int capturePoints(int captured)
+	{
+		switch (captured) {
+			case Move.PAWN: // Pawn or Present
+			case Move.PRIZE:
+				return 1;
+			case Move.ROOK: // Rook
+				return 3;
+			case Move.KING: // King
+				return 8;
+			default:
+				return 0;
+		}
+	}
+
+	// moves the chess part of square <from> to square <to>, capturing whatever stands there
+	private void movePart(int from, int to)
+	{
+		long fromBit = 1L << from;
+		long toBit = 1L << to;
+		long clear = ~(fromBit | toBit);
+		int color = (whiteBB & fromBit) != 0 ? 0 : 1;
+		int part = pieceAt(from);
+		int captured = pieceAt(to);
+
+		hash ^= Zobrist.part(color, part, from);
+		if(captured == Move.PRIZE)
+			hash ^= Zobrist.prize(to);
+		else if(captured != Move.NONE)
+		{
+			hash ^= Zobrist.part(1-color, captured, to);
+			material[1-color] -= MATERIAL[captured];
+			if(captured == Move.KING)
+				kingSquare[1-color] = NO_SQUARE;
+			else
+				partCount[1-color]--;
+		}
+
+		whiteBB &= clear;
+		blackBB &= clear;
+		pawnBB &= clear;
+		rookBB &= clear;
+		kingBB &= clear;
+		prizeBB &= ~toBit;
 
-		// otherwise
-		if(!pawnLastRow)
+		// check if it is a pawn that has made a move to the last line, it leaves the board
+		if(part == Move.PAWN && (MoveTables.LAST_ROW[color] & toBit) != 0)
 		{
-			board[x2][y2] = board[x1][y1];
-			board[x1][y1] = " ";
+			material[color] -= MATERIAL[part];
+			partCount[color]--;
+			return;
 		}
+		if(part == Move.KING)
+			kingSquare[color] = to;
 
+		if(color == 0)
+			whiteBB |= toBit;
+		else
+			blackBB |= toBit;
+		addPart(part, toBit);
+		hash ^= Zobrist.part(color, part, to);
 	}
 
 
 	public boolean terminalTest(){
 
 		boolean termination = false;
-		boolean whitePieceLeft = false;
-		boolean blackPieceLeft = false;
-		whiteKingIsUp = false;
-		blackKingIsUp = false;
-
-		for(int i=0; i<rows; i++)
-		{
-			for(int j=0; j<columns; j++)
-			{
-				String firstLetter = Character.toString(board[i][j].charAt(0));
-
-				if(firstLetter.equals("W")){
-					String secondLetter = Character.toString(board[i][j].charAt(1));
-					if(secondLetter.equals("K"))
-						whiteKingIsUp = true;
-					else
-						whitePieceLeft = true;
-				}
-				if (firstLetter.equals("B")){
-					String secondLetter = Character.toString(board[i][j].charAt(1));
-					if(secondLetter.equals("K"))
-						blackKingIsUp = true;
-					else
-						blackPieceLeft = true;
-				}
-			}
-		}
+		boolean whitePieceLeft = partCount[0] != 0;
+		boolean blackPieceLeft = partCount[1] != 0;
+		boolean whiteKingIsUp = kingSquare[0] != NO_SQUARE;
+		boolean blackKingIsUp = kingSquare[1] != NO_SQUARE;
 
 		if (!whiteKingIsUp || !blackKingIsUp){
 			termination = true;
@@ -725,34 +858,12 @@ public class World
 
 	public int evaluate(int player) {
 		int value = 0;
-		int whitePieces = 0;
-		int blackPieces = 0;
-		String whiteKingAt = "";
-		String blackKingAt = "";
-
-		for(int i=0; i<rows; i++)
-		{
-			for(int j=0; j<columns; j++)
-			{
-				String first = Character.toString(board[i][j].charAt(0));
-				if(first.equals("W")){
-					if(Character.toString(board[i][j].charAt(1)).equals("R"))
-						whitePieces += 10;
-					else if ((Character.toString(board[i][j].charAt(1)).equals("K")))
-						whiteKingAt = Integer.toString(i) + Integer.toString(j);
-					else
-						whitePieces += 1;
-				}
-				else if(first.equals("B")){
-					if(Character.toString(board[i][j].charAt(1)).equals("R"))
-						blackPieces += 10;
-					else if ((Character.toString(board[i][j].charAt(1)).equals("K")))
-						blackKingAt = Integer.toString(i) + Integer.toString(j);
-					else
-						blackPieces += 1;
-				}
-			}
-		}
+		int whitePieces = material[0];
+		int blackPieces = material[1];
+		int whiteKingAt = kingSquare[0];
+		int blackKingAt = kingSquare[1];
+		boolean whiteKingIsUp = whiteKingAt != NO_SQUARE;
+		boolean blackKingIsUp = blackKingAt != NO_SQUARE;
 
 		if(player == 0)
 		{
@@ -777,38 +888,110 @@ public class World
 		return value;
 	}
 
-	public boolean isKingChecked(int player, String position){
-		int targetX = Integer.parseInt(Character.toString(position.charAt(0)));
-		int targetY = Integer.parseInt(Character.toString(position.charAt(1)));
-		boolean check = false;
+	// the tablebase result for the player to move: > 0 captures the opponent's king in that many plies,
+	// < 0 loses its own in -result plies, 0 is a draw
+	// Tablebase.NOT_FOUND without a tablebase, with a prize on the board, a king captured or too many chess parts
+	public int probeTablebase()
+	{
+		Tablebase tablebase = TablebaseHolder.TABLEBASE;
+		if (tablebase == null || prizeBB != 0 || kingSquare[0] == NO_SQUARE || kingSquare[1] == NO_SQUARE
+				|| partCount[0] + partCount[1] > tablebase.maxParts())
+			return Tablebase.NOT_FOUND;
+		return tablebase.probe(whiteBB, blackBB, pawnBB, rookBB, kingBB, myColor);
+	}
 
-		if (player == 0){
-			setMyColor(1); //opponent
-			getAvailableMoves();
-			for (String move : availableMoves){
-				int x1 = Integer.parseInt(Character.toString(move.charAt(2)));
-				int y1 = Integer.parseInt(Character.toString(move.charAt(3)));
-				if (x1 == targetX && y1 == targetY){
-					check = true;
-					break;
-				}
+	// the tablebase file is mapped once by all the worlds on the first probe, null when it is missing (see TablebaseGenerator)
+	// the worlds of TablebaseGenerator never probe, so it can write the file while none of it is mapped
+	private static class TablebaseHolder
+	{
+		static final Tablebase TABLEBASE = Tablebase.open(Tablebase.FILE);
+	}
+
+	// what evaluate() gives once the king capture of a tablebase result has been played (a draw leaves both kings),
+	// supposing no other points are scored on the way
+	public int evaluateEndgame(int player, int result) {
+		int winner = result > 0 ? myColor : result < 0 ? 1 - myColor : -1;
+		int diff = player == 0 ? scoreWhite - scoreBlack : scoreBlack - scoreWhite;
+		int value = diff + material[player] - material[1 - player];
+
+		if(winner == player)
+		{
+			value += capturePoints(Move.KING);
+			if(diff + capturePoints(Move.KING) < 0)
+				value -= 20;
+		}
+		else if(winner == 1 - player)
+			value -= capturePoints(Move.KING);
+		return value;
+	}
+
+	// the move that keeps the best tablebase result: the fastest win, else a draw, else the slowest loss
+	// Move.NONE when the position is not in the tablebase
+	public int tablebaseMove()
+	{
+		if (probeTablebase() == Tablebase.NOT_FOUND)
+			return Move.NONE;
+
+		MoveList moves = new MoveList();
+		generateMoves(moves);
+
+		int bestMove = Move.NONE;
+		int bestRank = Integer.MIN_VALUE;
+		for (int k = 0; k < moves.size(); k++)
+		{
+			int move = moves.get(k);
+			if (Move.captured(move) == Move.KING)
+				return move;
+
+			make(move);
+			int reply = probeTablebase();	// the result of the opponent
+			unmake();
+
+			// a faster win ranks higher, then a draw, then a slower loss, the results fit in a byte
+			int rank = reply < 0 ? 256 + reply : reply > 0 ? reply - 256 : 0;
+			if (rank > bestRank)
+			{
+				bestRank = rank;
+				bestMove = move;
 			}
-			setMyColor(0);
 		}
-		else {
-			setMyColor(0);
-			getAvailableMoves();
-			for (String move : availableMoves){
-				int x1 = Integer.parseInt(Character.toString(move.charAt(2)));
-				int y1 = Integer.parseInt(Character.toString(move.charAt(3)));
-				if (x1 == targetX && y1 == targetY){
-					check = true;
+		return bestMove;
+	}
+
+	// position is the square (row*columns + column) of the player's king
+	public boolean isKingChecked(int player, int position){
+		return isSquareAttacked(position, 1 - player);
+	}
+
+	// whether a chess part of <color> can capture on the square, looking from the square back to the attackers
+	// meant for squares held by the other color, the moves are not generated and the player to move is left as it is
+	public boolean isSquareAttacked(int square, int color)
+	{
+		long attackers = color == 0 ? whiteBB : blackBB;
+
+		if((attackers & pawnBB & MoveTables.PAWN_ATTACKERS[color][square]) != 0)
+			return true;
+		if((attackers & kingBB & MoveTables.KING_MASKS[square]) != 0)
+			return true;
+
+		// the first chess part or prize on a ray stops a rook, it attacks only if it is the rook itself
+		long blockers = whiteBB | blackBB | prizeBB;
+		long rooks = attackers & rookBB;
+		for(int[] ray : MoveTables.ROOK_RAYS[square])
+		{
+			for(int from : ray)
+			{
+				long bit = 1L << from;
+
+				if((blockers & bit) != 0)
+				{
+					if((rooks & bit) != 0)
+						return true;
 					break;
 				}
 			}
-			setMyColor(1);
 		}
-		return check;
+		return false;
 	}
 
 	public static String[][] cloneArray2D(String[][] src) {
@@ -821,4 +1004,3 @@ public class World
 	}
 
 }
-
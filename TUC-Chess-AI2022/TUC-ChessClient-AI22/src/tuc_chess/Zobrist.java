@@ -0,0 +1,53 @@
+package tuc_chess;
+
+import java.util.Random;
+
+// random keys for hashing a position: every chess part on every square, prizes, the player to move and the score difference
+public final class Zobrist
+{
+	private static final int MAX_SCORE_DIFF = 99;	// the server sends the scores as two digits
+
+	private static final long[][] PARTS = new long[6][MoveTables.SQUARES];	// [color*3 + part-1][square]
+	private static final long[] PRIZES = new long[MoveTables.SQUARES];
+	private static final long[] SCORE_DIFFS = new long[2*MAX_SCORE_DIFF + 1];
+	public static final long BLACK_TO_MOVE;
+
+	static
+	{
+		// fixed seed, so that a position gets the same key in every run
+		Random ran = new Random(0x7C0C4E55L);
+
+		for(int k=0; k<PARTS.length; k++)
+			for(int square=0; square<MoveTables.SQUARES; square++)
+				PARTS[k][square] = ran.nextLong();
+
+		for(int square=0; square<MoveTables.SQUARES; square++)
+			PRIZES[square] = ran.nextLong();
+
+		for(int k=0; k<SCORE_DIFFS.length; k++)
+			SCORE_DIFFS[k] = ran.nextLong();
+
+		BLACK_TO_MOVE = ran.nextLong();
+	}
+
+	private Zobrist()
+	{
+	}
+
+	// part is one of Move.PAWN, Move.ROOK, Move.KING
+	public static long part(int color, int part, int square)
+	{
+		return PARTS[color*3 + part-1][square];
+	}
+
+	public static long prize(int square)
+	{
+		return PRIZES[square];
+	}
+
+	public static long scoreDiff(int scoreWhite, int scoreBlack)
+	{
+		int diff = Math.max(-MAX_SCORE_DIFF, Math.min(MAX_SCORE_DIFF, scoreWhite - scoreBlack));
+		return SCORE_DIFFS[diff + MAX_SCORE_DIFF];
+	}
+}